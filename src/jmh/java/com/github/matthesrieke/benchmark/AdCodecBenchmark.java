@@ -0,0 +1,122 @@
+/**
+ * Copyright (C) 2015 Matthes Rieke
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.matthesrieke.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.github.matthesrieke.realty.Ad;
+import com.github.matthesrieke.realty.Util;
+import com.github.matthesrieke.realty.crawler.Crawler;
+import com.github.matthesrieke.realty.storage.AdCodec;
+import com.github.matthesrieke.realty.storage.ValueDictionary;
+
+/**
+ * Encodes and decodes the ads of all test pages, one operation is all
+ * 130 ads:
+ * <ul>
+ * <li>serialization: Java serialization as stored before the codec</li>
+ * <li>codec: {@link AdCodec} with the values of a
+ * {@link ValueDictionary}</li>
+ * <li>compressed: {@link AdCodec} which deflates larger ads</li>
+ * </ul>
+ * The bytes per ad of every format are printed by the setup.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class AdCodecBenchmark {
+
+	private static final String[] PAGES = {"immomia", "nadann", "wohnungen.ms",
+			Fixtures.IMMOBILIENSCOUT24};
+
+	@Param({"serialization", "codec", "compressed"})
+	public String format;
+
+	private final List<Ad> ads = new ArrayList<>();
+	private final List<byte[]> encoded = new ArrayList<>();
+	private ValueDictionary dictionary;
+	private AdCodec codec;
+
+	@Setup
+	public void setup() throws IOException {
+		for (String page : PAGES) {
+			Crawler crawler = Fixtures.resolveCrawler(page);
+			ads.addAll(crawler.parseDom(crawler.preprocessContent(
+					new StringBuilder(Fixtures.loadPage(page, 1)))));
+		}
+		
+		dictionary = new ValueDictionary();
+		for (Ad ad : ads) {
+			dictionary.intern(ad);
+		}
+		codec = new AdCodec(dictionary, format.equals("compressed"));
+		
+		long bytes = 0;
+		for (Ad ad : ads) {
+			byte[] data = encode(ad);
+			encoded.add(data);
+			bytes += data.length;
+		}
+		System.out.println(String.format("%n%s: %s ads, %s bytes per ad", format,
+				ads.size(), bytes / ads.size()));
+	}
+
+	private byte[] encode(Ad ad) throws IOException {
+		if (format.equals("serialization")) {
+			return Util.serialize(ad);
+		}
+		return codec.encode(ad);
+	}
+
+	@Benchmark
+	public int encodeAds() throws IOException {
+		int result = 0;
+		for (Ad ad : ads) {
+			result += encode(ad).length;
+		}
+		return result;
+	}
+
+	@Benchmark
+	public int decodeAds() throws IOException {
+		int result = 0;
+		for (byte[] data : encoded) {
+			Ad ad;
+			if (format.equals("serialization")) {
+				ad = Util.deserialize(new ByteArrayInputStream(data), Ad.class);
+			}
+			else {
+				ad = codec.decode(data);
+			}
+			result += ad.getProperties().size();
+		}
+		return result;
+	}
+
+}
@@ -0,0 +1,63 @@
+/**
+ * Copyright (C) 2015 Matthes Rieke
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.matthesrieke.benchmark;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.github.matthesrieke.realty.Ad;
+import com.github.matthesrieke.realty.Util;
+import com.github.matthesrieke.realty.crawler.Crawler;
+
+/**
+ * Parses the preprocessed result pages of the test resources into ads.
+ * The pages contain 24 (immomia), 81 (nadann) and 5 (wohnungen.ms) ads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ExtractionBenchmark {
+
+	@Param({"immomia", "nadann", "wohnungen.ms"})
+	public String provider;
+
+	private Crawler crawler;
+	private String content;
+
+	@Setup
+	public void setup() throws IOException {
+		crawler = Fixtures.resolveCrawler(provider);
+		StringBuilder sb = Util.parseStream(getClass().getResourceAsStream(
+				"/" + provider + ".html"));
+		content = crawler.preprocessContent(sb).toString();
+	}
+
+	@Benchmark
+	public List<Ad> parsePage() throws IOException {
+		return crawler.parseDom(new StringBuilder(content));
+	}
+
+}
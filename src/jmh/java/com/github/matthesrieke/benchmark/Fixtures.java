@@ -0,0 +1,130 @@
+/**
+ * Copyright (C) 2015 Matthes Rieke
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.matthesrieke.benchmark;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import com.github.matthesrieke.realty.Util;
+import com.github.matthesrieke.realty.crawler.Crawler;
+import com.github.matthesrieke.realty.crawler.ImmobilienScout24Crawler;
+import com.github.matthesrieke.realty.crawler.RuleBasedCrawler;
+
+/**
+ * The result pages of the test resources and their crawlers. A page is
+ * scaled by repeating its ads: the HTML pages are concatenated, which the
+ * tokenizer reads as one page, and the result list embedded into the
+ * immobilienscout24 page repeats its results.
+ */
+final class Fixtures {
+
+	static final String IMMOBILIENSCOUT24 = "immobilienscout24";
+
+	private static final String RESULTS = "\"results\":[";
+
+	private Fixtures() {
+	}
+
+	static Crawler resolveCrawler(String page) throws IOException {
+		switch (page) {
+		case "immomia":
+			return RuleBasedCrawler.forProvider("wn-immo");
+		case "nadann":
+		case "wohnungen.ms":
+			return RuleBasedCrawler.forProvider(page);
+		case IMMOBILIENSCOUT24:
+			return new ImmobilienScout24Crawler();
+		default:
+			throw new IllegalArgumentException("Unknown page: " + page);
+		}
+	}
+
+	/**
+	 * @param copies the number of times the ads of the page are contained
+	 */
+	static String loadPage(String page, int copies) {
+		InputStream is = Fixtures.class.getResourceAsStream("/" + page + ".html");
+		if (is == null) {
+			throw new IllegalArgumentException("Unknown page: " + page);
+		}
+		String content = Util.parseStream(is).toString();
+		return page.equals(IMMOBILIENSCOUT24) ? repeatResults(content, copies)
+				: repeat(content, copies);
+	}
+
+	private static String repeat(String content, int copies) {
+		StringBuilder result = new StringBuilder(content.length() * copies);
+		for (int i = 0; i < copies; i++) {
+			result.append(content);
+		}
+		return result.toString();
+	}
+
+	private static String repeatResults(String content, int copies) {
+		int start = content.indexOf(RESULTS);
+		if (start < 0) {
+			throw new IllegalStateException("No result list found");
+		}
+		start += RESULTS.length();
+		int end = findArrayEnd(content, start);
+		String results = content.substring(start, end);
+		
+		StringBuilder result = new StringBuilder(content.length() + results.length() * copies);
+		result.append(content, 0, start);
+		for (int i = 0; i < copies; i++) {
+			if (i > 0) {
+				result.append(',');
+			}
+			result.append(results);
+		}
+		result.append(content, end, content.length());
+		return result.toString();
+	}
+
+	/**
+	 * @return the index of the bracket ending the array which starts
+	 * before the index
+	 */
+	private static int findArrayEnd(String content, int index) {
+		int depth = 0;
+		boolean string = false;
+		for (int i = index; i < content.length(); i++) {
+			char c = content.charAt(i);
+			if (string) {
+				if (c == '\\') {
+					i++;
+				}
+				else if (c == '"') {
+					string = false;
+				}
+			}
+			else if (c == '"') {
+				string = true;
+			}
+			else if (c == '[' || c == '{') {
+				depth++;
+			}
+			else if (c == ']' || c == '}') {
+				if (depth == 0) {
+					return i;
+				}
+				depth--;
+			}
+		}
+		throw new IllegalStateException("Unterminated result list");
+	}
+
+}
@@ -0,0 +1,123 @@
+/**
+ * Copyright (C) 2015 Matthes Rieke
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.matthesrieke.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.github.matthesrieke.realty.Ad;
+import com.github.matthesrieke.realty.Util;
+import com.github.matthesrieke.realty.crawler.Crawler;
+import com.github.matthesrieke.realty.storage.AdCodec;
+import com.github.matthesrieke.realty.storage.ValueDictionary;
+
+/**
+ * Measures every stage a result page passes during a crawl, one
+ * operation is one page:
+ * <ul>
+ * <li>readPage: decodes the fetched bytes ({@link Util#parseStream})</li>
+ * <li>preprocessPage: {@link Crawler#preprocessContent}</li>
+ * <li>parsePage: {@link Crawler#parseDom} of the preprocessed page</li>
+ * <li>encodeAds: encodes the ads of the page as stored
+ * ({@link AdCodec#encode}), with the values of the page in the
+ * dictionary</li>
+ * <li>renderAds: {@link Ad#toHTML} of the ads of the page</li>
+ * </ul>
+ * The pages are scaled by their number of ads (see {@link Fixtures}). Run
+ * with the GC profiler of the benchmark profile, its
+ * "gc.alloc.rate.norm" is the allocation per page.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class PipelineBenchmark {
+
+	@Param({"immomia", "nadann", "wohnungen.ms", Fixtures.IMMOBILIENSCOUT24})
+	public String page;
+
+	@Param({"1", "10"})
+	public int copies;
+
+	private Crawler crawler;
+	private byte[] bytes;
+	private String raw;
+	private String preprocessed;
+	private List<Ad> ads;
+	private AdCodec codec;
+
+	@Setup
+	public void setup() throws IOException {
+		crawler = Fixtures.resolveCrawler(page);
+		raw = Fixtures.loadPage(page, copies);
+		bytes = raw.getBytes(StandardCharsets.UTF_8);
+		preprocessed = crawler.preprocessContent(new StringBuilder(raw)).toString();
+		ads = crawler.parseDom(new StringBuilder(preprocessed));
+		if (ads.isEmpty()) {
+			throw new IllegalStateException("No ads found in page " + page);
+		}
+		ValueDictionary dictionary = new ValueDictionary();
+		for (Ad ad : ads) {
+			dictionary.intern(ad);
+		}
+		codec = new AdCodec(dictionary, false);
+	}
+
+	@Benchmark
+	public StringBuilder readPage() {
+		return Util.parseStream(new ByteArrayInputStream(bytes));
+	}
+
+	@Benchmark
+	public StringBuilder preprocessPage() {
+		return crawler.preprocessContent(new StringBuilder(raw));
+	}
+
+	@Benchmark
+	public List<Ad> parsePage() throws IOException {
+		return crawler.parseDom(new StringBuilder(preprocessed));
+	}
+
+	@Benchmark
+	public int encodeAds() {
+		int result = 0;
+		for (Ad ad : ads) {
+			result += codec.encode(ad).length;
+		}
+		return result;
+	}
+
+	@Benchmark
+	public int renderAds() {
+		int result = 0;
+		for (Ad ad : ads) {
+			result += ad.toHTML().length();
+		}
+		return result;
+	}
+
+}
@@ -0,0 +1,138 @@
+/**
+ * Copyright (C) 2015 Matthes Rieke
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.matthesrieke.benchmark;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.github.matthesrieke.realty.CharSequenceReader;
+import com.github.matthesrieke.realty.Util;
+import com.github.matthesrieke.realty.html.HtmlElement;
+import com.github.matthesrieke.realty.html.HtmlHandler;
+import com.github.matthesrieke.realty.html.HtmlTokenizer;
+import com.github.matthesrieke.realty.html.MarkupWriter;
+
+/**
+ * Tokenizes pages of growing size, the time per copy has to stay
+ * constant. Besides nadann.html, which lacks end tags of its table rows
+ * and contains bare ampersands, synthetic worst cases are used:
+ * <ul>
+ * <li>unclosed: nested elements which are never ended, each start tag
+ * looks for a paragraph or anchor it implicitly ends</li>
+ * <li>stray: end tags without a start tag on a deep stack of open
+ * elements</li>
+ * <li>void: void elements without a closing "/&gt;" or end tag</li>
+ * </ul>
+ * The normalization additionally writes the events as well-formed markup.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class TokenizerBenchmark {
+
+	@Param({"nadann", "unclosed", "stray", "void"})
+	public String page;
+
+	@Param({"1", "10", "100"})
+	public int copies;
+
+	private StringBuilder content;
+
+	@Setup
+	public void setup() {
+		String unit = createPage(page);
+		content = new StringBuilder(unit.length() * copies);
+		for (int i = 0; i < copies; i++) {
+			content.append(unit);
+		}
+	}
+
+	private String createPage(String name) {
+		StringBuilder sb = new StringBuilder();
+		switch (name) {
+		case "unclosed":
+			for (int i = 0; i < 5000; i++) {
+				sb.append("<div class=\"cell\">text & more <a href=\"#\">link");
+			}
+			return sb.toString();
+		case "stray":
+			for (int i = 0; i < 1000; i++) {
+				sb.append("<div><span>");
+			}
+			for (int i = 0; i < 5000; i++) {
+				sb.append("</em></li></td>text");
+			}
+			return sb.toString();
+		case "void":
+			for (int i = 0; i < 5000; i++) {
+				sb.append("<p>text<br>more<img src=\"a.jpg\" alt=\"a\"><hr>");
+			}
+			return sb.toString();
+		default:
+			return Util.parseStream(getClass().getResourceAsStream(
+					"/" + name + ".html")).toString();
+		}
+	}
+
+	@Benchmark
+	public int tokenize() throws IOException {
+		CountingHandler handler = new CountingHandler();
+		new HtmlTokenizer(new CharSequenceReader(content), handler).parse();
+		return handler.count;
+	}
+
+	@Benchmark
+	public StringBuilder normalize() throws IOException {
+		StringBuilder result = new StringBuilder(content.length());
+		MarkupWriter.normalize(new CharSequenceReader(content), result);
+		return result;
+	}
+
+	private static class CountingHandler implements HtmlHandler {
+
+		private int count;
+
+		@Override
+		public void startElement(HtmlElement element) {
+			count++;
+		}
+
+		@Override
+		public void endElement(HtmlElement element) {
+			count++;
+		}
+
+		@Override
+		public void characters(CharSequence text) {
+			count += text.length();
+		}
+
+		@Override
+		public void endDocument() {
+		}
+
+	}
+
+}
@@ -15,16 +15,28 @@
  */
 package com.github.matthesrieke.realty;
 
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
+import java.math.BigDecimal;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 
-import org.apache.xmlbeans.XmlObject;
 import org.joda.time.DateTime;
 
+/**
+ * An ad with its properties in one slot per {@link PropertyKeys}. The
+ * features are kept as list only, the {@link PropertyKeys#FEATURES} text
+ * is joined when it is read. Price, space and rooms are additionally
+ * parsed once when they are put, so ads can be filtered and compared
+ * without parsing their text.
+ */
 public class Ad implements Serializable {
 
 	/**
@@ -33,19 +45,40 @@ public class Ad implements Serializable {
 	private static final long serialVersionUID = 6513599382861284635L;
 	
 	private static final String SEP = "; ";
+	
+	private static final String FEATURE_SEP = ", ";
+	
+	/**
+	 * the number format of the providers
+	 */
+	private static final Locale NUMBER_LOCALE = Locale.GERMANY;
+	
+	private static final BigDecimal CENTS = BigDecimal.valueOf(100);
+	
+	/**
+	 * the value of a numeric field which is not known
+	 */
+	public static final long UNKNOWN = -1;
 
-	private static String htmlTemplate = null;
+	private static final AdTemplate HTML_TEMPLATE;
 	
 	static {
 		InputStream is = Ad.class.getResourceAsStream("ad-template.html");
-		htmlTemplate = Util.parseStream(is).toString();
+		HTML_TEMPLATE = AdTemplate.compile(Util.parseStream(is));
 	}
 
-	private XmlObject node;
+	private SourceFragment source;
 	private String id;
 	private List<String> featureList = new ArrayList<>();
-	private Map<PropertyKeys, String> properties = new HashMap<>();
+	private Map<PropertyKeys, String> properties = new EnumMap<>(PropertyKeys.class);
 	private DateTime dateTime;
+	
+	/*
+	 * derived from the properties, also when an ad is read
+	 */
+	private transient long priceCents = UNKNOWN;
+	private transient float space = UNKNOWN;
+	private transient float rooms = UNKNOWN;
 
 	public enum PropertyKeys {
 		LOCATION, SPACE, ROOMS, PRICE, FEATURES, AVAILABLE_FROM, SELLER_TYPE, IMAGE, DATETIME, ID, DESCRIPTION, PROVIDER
@@ -75,11 +108,7 @@ public class Ad implements Serializable {
 
 		if (featureList != null && featureList.size() > 0) {
 			sb.append("Ausstattung: ");
-			for (String f : featureList) {
-				sb.append(f);
-				sb.append(", ");
-			}
-			sb.delete(sb.length() - 2, sb.length());
+			sb.append(joinFeatures());
 		}
 		sb.append(SEP);
 
@@ -98,41 +127,35 @@ public class Ad implements Serializable {
 	}
 
 	public String toHTML() {
-		String result = htmlTemplate;
-		
-		enrichProperties();
-
-		StringBuilder tmpsb = new StringBuilder("${");
-		for (PropertyKeys key : PropertyKeys.values()) {
-			tmpsb.append(key.toString());
-			tmpsb.append("}");
-			String value = properties.get(key);
-			if (value == null) {
-				value = "";
-			}
-			result = result.replace(tmpsb.toString(), value);
-			tmpsb.delete(2, tmpsb.length());
+		StringBuilder result = new StringBuilder();
+		try {
+			writeHTML(result);
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
 		}
-
-		return result;
+		return result.toString();
 	}
 
-	private void enrichProperties() {
-		String img = properties.get(PropertyKeys.IMAGE);
-		if (img == null || img.isEmpty()) {
-			String provider = properties.get(PropertyKeys.PROVIDER);
-			img = String.format("static/img/provider/%s.png",
-					(provider != null && !provider.isEmpty() ? provider : "rlt-crwlr"));
-			properties.put(PropertyKeys.IMAGE, img);
-		}
+	/**
+	 * renders the ad with the ad template, the values are HTML escaped
+	 */
+	public void writeHTML(Appendable target) throws IOException {
+		HTML_TEMPLATE.render(this, target);
 	}
 
-	public void setNode(XmlObject elems) {
-		this.node = elems;
+	/**
+	 * @param source the markup the ad was extracted from, or null
+	 */
+	public void setSource(SourceFragment source) {
+		this.source = source;
 	}
 
-	public XmlObject getNode() {
-		return node;
+	/**
+	 * @return the markup the ad was extracted from, or null if it was not
+	 * kept
+	 */
+	public SourceFragment getSource() {
+		return source;
 	}
 
 	public String getId() {
@@ -143,8 +166,44 @@ public class Ad implements Serializable {
 		return featureList;
 	}
 
+	/**
+	 * @return the unmodifiable properties except {@link PropertyKeys#FEATURES}.
+	 * Values are changed through {@link #putProperty(PropertyKeys, String)}
+	 * to keep the numeric fields in sync
+	 */
 	public Map<PropertyKeys, String> getProperties() {
-		return properties;
+		return Collections.unmodifiableMap(properties);
+	}
+
+	/**
+	 * @return the value, the features are joined
+	 */
+	public String getProperty(PropertyKeys key) {
+		if (key == PropertyKeys.FEATURES) {
+			return featureList == null || featureList.isEmpty() ? null : joinFeatures();
+		}
+		return properties.get(key);
+	}
+
+	/**
+	 * @return the price in cents, or {@link #UNKNOWN}
+	 */
+	public long getPriceCents() {
+		return priceCents;
+	}
+
+	/**
+	 * @return the space in square metres, or {@link #UNKNOWN}
+	 */
+	public float getSpace() {
+		return space;
+	}
+
+	/**
+	 * @return the number of rooms, or {@link #UNKNOWN}
+	 */
+	public float getRooms() {
+		return rooms;
 	}
 
 	public DateTime getDateTime() {
@@ -162,21 +221,48 @@ public class Ad implements Serializable {
 
 	public void setFeatureList(List<String> parseFeatures) {
 		featureList = parseFeatures;
+	}
 
-		StringBuilder sb = new StringBuilder();
-		for (String f : featureList) {
-			sb.append(f);
-			sb.append(", ");
-		}
-		if (featureList != null && featureList.size() > 0) {
-			sb.delete(sb.length() - 2, sb.length());
+	/**
+	 * @param value the value, features are split at commas. Blank features
+	 * are an empty list
+	 */
+	public void putProperty(PropertyKeys key, String value) {
+		switch (key) {
+		case FEATURES:
+			setFeatureList(value == null || value.trim().isEmpty() ? new ArrayList<String>()
+					: new ArrayList<>(Arrays.asList(value.split(FEATURE_SEP))));
+			return;
+		case PRICE:
+			BigDecimal price = Util.parseNumber(value, NUMBER_LOCALE);
+			priceCents = price == null ? UNKNOWN : price.multiply(CENTS).longValue();
+			break;
+		case SPACE:
+			space = parseFloat(value);
+			break;
+		case ROOMS:
+			rooms = parseFloat(value);
+			break;
+		default:
+			break;
 		}
+		properties.put(key, value);
+	}
 
-		properties.put(PropertyKeys.FEATURES, sb.toString());
+	private static float parseFloat(String value) {
+		BigDecimal result = Util.parseNumber(value, NUMBER_LOCALE);
+		return result == null ? UNKNOWN : result.floatValue();
 	}
 
-	public void putProperty(PropertyKeys key, String value) {
-		properties.put(key, value);
+	private String joinFeatures() {
+		StringBuilder sb = new StringBuilder();
+		for (String f : featureList) {
+			if (sb.length() > 0) {
+				sb.append(FEATURE_SEP);
+			}
+			sb.append(f);
+		}
+		return sb.toString();
 	}
 
 	public void setDateTime(DateTime crawlTime) {
@@ -184,4 +270,26 @@ public class Ad implements Serializable {
 		properties.put(PropertyKeys.DATETIME, dateTime.toString(Util.GER_DATE_FORMAT));
 	}
 
+	/**
+	 * ads stored before the properties were kept in slots hold a hash map
+	 * and the joined features
+	 */
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		
+		Map<PropertyKeys, String> stored = properties;
+		properties = new EnumMap<>(PropertyKeys.class);
+		priceCents = UNKNOWN;
+		space = UNKNOWN;
+		rooms = UNKNOWN;
+		for (Map.Entry<PropertyKeys, String> property : stored.entrySet()) {
+			if (property.getKey() != PropertyKeys.FEATURES) {
+				putProperty(property.getKey(), property.getValue());
+			}
+		}
+		if (featureList == null) {
+			featureList = new ArrayList<>();
+		}
+	}
+
 }
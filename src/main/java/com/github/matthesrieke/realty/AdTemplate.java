@@ -0,0 +1,143 @@
+/**
+ * Copyright (C) 2015 Matthes Rieke
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.matthesrieke.realty;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.github.matthesrieke.realty.Ad.PropertyKeys;
+
+/**
+ * A template such as "ad-template.html", compiled into its literal parts
+ * and its "${KEY}" placeholders of {@link PropertyKeys}. An ad is
+ * rendered in one pass, the values are HTML escaped and a missing value
+ * is rendered empty. Placeholders of unknown keys are kept as literals.
+ * Instances are immutable and may be shared.
+ */
+public class AdTemplate {
+
+	private static final String PLACEHOLDER_START = "${";
+	private static final String PLACEHOLDER_END = "}";
+
+	/**
+	 * either a literal or a key, by position
+	 */
+	private final Object[] segments;
+
+	private AdTemplate(Object[] segments) {
+		this.segments = segments;
+	}
+
+	public static AdTemplate compile(CharSequence template) {
+		String source = template.toString();
+		List<Object> segments = new ArrayList<>();
+		StringBuilder literal = new StringBuilder();
+		int index = 0;
+		while (index < source.length()) {
+			int start = source.indexOf(PLACEHOLDER_START, index);
+			int end = start < 0 ? -1 : source.indexOf(PLACEHOLDER_END, start);
+			if (end < 0) {
+				literal.append(source, index, source.length());
+				break;
+			}
+			
+			PropertyKeys key = resolveKey(source.substring(start + PLACEHOLDER_START.length(), end));
+			if (key == null) {
+				literal.append(source, index, end + PLACEHOLDER_END.length());
+			}
+			else {
+				literal.append(source, index, start);
+				if (literal.length() > 0) {
+					segments.add(literal.toString());
+					literal.setLength(0);
+				}
+				segments.add(key);
+			}
+			index = end + PLACEHOLDER_END.length();
+		}
+		if (literal.length() > 0) {
+			segments.add(literal.toString());
+		}
+		return new AdTemplate(segments.toArray());
+	}
+
+	private static PropertyKeys resolveKey(String name) {
+		for (PropertyKeys key : PropertyKeys.values()) {
+			if (key.name().equals(name)) {
+				return key;
+			}
+		}
+		return null;
+	}
+
+	public void render(Ad ad, Appendable target) throws IOException {
+		for (Object segment : segments) {
+			if (segment instanceof PropertyKeys) {
+				String value = resolveValue(ad, (PropertyKeys) segment);
+				if (value != null) {
+					escape(value, target);
+				}
+			}
+			else {
+				target.append((String) segment);
+			}
+		}
+	}
+
+	/**
+	 * an ad without an image shows the logo of its provider
+	 */
+	private static String resolveValue(Ad ad, PropertyKeys key) {
+		String result = ad.getProperty(key);
+		if (key == PropertyKeys.IMAGE && (result == null || result.isEmpty())) {
+			String provider = ad.getProperty(PropertyKeys.PROVIDER);
+			result = String.format("static/img/provider/%s.png",
+					(provider != null && !provider.isEmpty() ? provider : "rlt-crwlr"));
+		}
+		return result;
+	}
+
+	private static void escape(String value, Appendable target) throws IOException {
+		int start = 0;
+		for (int i = 0; i < value.length(); i++) {
+			String replacement;
+			switch (value.charAt(i)) {
+			case '&':
+				replacement = "&amp;";
+				break;
+			case '<':
+				replacement = "&lt;";
+				break;
+			case '>':
+				replacement = "&gt;";
+				break;
+			case '"':
+				replacement = "&quot;";
+				break;
+			case '\'':
+				replacement = "&#39;";
+				break;
+			default:
+				continue;
+			}
+			target.append(value, start, i).append(replacement);
+			start = i + 1;
+		}
+		target.append(value, start, value.length());
+	}
+
+}
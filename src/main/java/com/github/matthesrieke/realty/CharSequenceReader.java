@@ -0,0 +1,54 @@
+/**
+ * Copyright (C) 2015 Matthes Rieke
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.matthesrieke.realty;
+
+import java.io.Reader;
+
+/**
+ * Reads a {@link CharSequence} without copying it into a String first.
+ */
+public class CharSequenceReader extends Reader {
+
+	private final CharSequence content;
+	private int position;
+
+	public CharSequenceReader(CharSequence content) {
+		this.content = content;
+	}
+
+	@Override
+	public int read(char[] cbuf, int off, int len) {
+		if (position >= content.length()) {
+			return -1;
+		}
+		int count = Math.min(len, content.length() - position);
+		if (content instanceof StringBuilder) {
+			((StringBuilder) content).getChars(position, position + count, cbuf, off);
+		}
+		else {
+			for (int i = 0; i < count; i++) {
+				cbuf[off + i] = content.charAt(position + i);
+			}
+		}
+		position += count;
+		return count;
+	}
+
+	@Override
+	public void close() {
+	}
+
+}
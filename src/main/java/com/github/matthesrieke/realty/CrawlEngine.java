@@ -0,0 +1,642 @@
+/**
+ * Copyright (C) 2015 Matthes Rieke
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.matthesrieke.realty;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.http.HttpStatus;
+import org.joda.time.DateTime;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.matthesrieke.realty.crawler.Crawler;
+import com.github.matthesrieke.realty.http.CircuitBreaker;
+import com.github.matthesrieke.realty.http.FetchStatistics;
+import com.github.matthesrieke.realty.http.Page;
+import com.github.matthesrieke.realty.http.PageFetcher;
+import com.github.matthesrieke.realty.http.PendingPage;
+import com.github.matthesrieke.realty.http.TransferVolume;
+import com.github.matthesrieke.realty.notification.Notification;
+import com.github.matthesrieke.realty.storage.CrawlCheckpoint;
+import com.github.matthesrieke.realty.storage.CrawlRun;
+import com.github.matthesrieke.realty.storage.Metadata;
+import com.github.matthesrieke.realty.storage.PageValidator;
+import com.github.matthesrieke.realty.storage.Storage;
+
+/**
+ * Runs the crawl of all base links on a bounded worker pool. Base links
+ * are grouped by their host and each group is processed sequentially by
+ * a single worker, so that a host never sees more than one crawler at a
+ * time while different providers are crawled in parallel.
+ */
+public class CrawlEngine {
+
+	private static final Logger logger = LoggerFactory
+			.getLogger(CrawlEngine.class);
+
+	private final List<Crawler> crawlers;
+	private final Storage storage;
+	private final Notification notification;
+	private final PageFetcher fetcher;
+	private final ExecutorService executor;
+	private final ExecutorService prefetchExecutor;
+	private final int incrementalStopPages;
+	private final int fullCrawlPeriodHours;
+	private final int breakerFailureThreshold;
+	private final int breakerOpenMinutes;
+	private final long resumeMaxAgeMillis;
+	private final ConcurrentMap<String, CircuitBreaker> circuitBreakers = new ConcurrentHashMap<>();
+	private final ReentrantLock crawlLock = new ReentrantLock();
+	private volatile boolean shuttingDown;
+	private DateTime lastFullCrawl;
+
+	public CrawlEngine(List<Crawler> crawlers, Storage storage,
+			Notification notification, PageFetcher fetcher, Properties properties) {
+		this.crawlers = crawlers;
+		this.storage = storage;
+		this.notification = notification;
+		this.fetcher = fetcher;
+		this.incrementalStopPages = Math.max(1, Util.getIntegerProperty(properties, "incrementalStopPages", 1));
+		this.fullCrawlPeriodHours = Util.getIntegerProperty(properties, "fullCrawlPeriodHours", 24);
+		this.breakerFailureThreshold = Util.getIntegerProperty(properties, "circuitBreaker.failureThreshold", 3);
+		this.breakerOpenMinutes = Util.getIntegerProperty(properties, "circuitBreaker.openMinutes", 60);
+		/*
+		 * by default a run is only resumed within its crawl period
+		 */
+		int crawlPeriodHours = Util.getIntegerProperty(properties, "crawlPeriodHours", 6);
+		this.resumeMaxAgeMillis = TimeUnit.HOURS.toMillis(
+				Util.getIntegerProperty(properties, "resumeMaxAgeHours", crawlPeriodHours));
+		
+		int parallelism = Util.getIntegerProperty(properties, "crawlParallelism", 4);
+		this.executor = Executors.newFixedThreadPool(Math.max(1, parallelism),
+				new CrawlThreadFactory("crawl-worker-"));
+		/*
+		 * every worker has at most one page prefetched at a time
+		 */
+		this.prefetchExecutor = Executors.newFixedThreadPool(Math.max(1, parallelism),
+				new CrawlThreadFactory("crawl-prefetch-"));
+		logger.info(String.format("Crawl engine uses up to %s parallel workers.",
+				Math.max(1, parallelism)));
+		
+		try {
+			CrawlRun lastFull = storage.getLatestFinishedCrawlRun(true);
+			if (lastFull != null) {
+				this.lastFullCrawl = lastFull.getStartTime();
+			}
+		} catch (IOException e) {
+			logger.warn("Could not resolve the last full crawl", e);
+		}
+	}
+
+	/**
+	 * @param periodMillis the period between two crawl runs
+	 * @return the delay until the next run is due: zero if the last run
+	 * has been interrupted, otherwise the remainder of the period since
+	 * the last run finished
+	 */
+	public long getInitialDelay(long periodMillis) {
+		CrawlRun latest;
+		try {
+			latest = storage.getLatestCrawlRun();
+		} catch (IOException e) {
+			logger.warn("Could not resolve the latest crawl run", e);
+			return 0;
+		}
+		
+		if (latest == null || latest.isResumable()) {
+			return 0;
+		}
+		
+		DateTime end = latest.getEndTime() != null ? latest.getEndTime() : latest.getStartTime();
+		return Math.max(0, end.getMillis() + periodMillis - System.currentTimeMillis());
+	}
+
+	/**
+	 * Crawls all provided base links. If the latest run has not finished
+	 * and is younger than <code>resumeMaxAgeHours</code> it is resumed from
+	 * its checkpoints, an older one is abandoned. Otherwise a full crawl is
+	 * done if the last one is older than the configured full crawl period,
+	 * or an incremental crawl.
+	 * 
+	 * @see #crawl(List, boolean)
+	 */
+	public void crawl(List<String> baseLinks) throws InterruptedException {
+		CrawlRun latest = null;
+		try {
+			latest = storage.getLatestCrawlRun();
+		} catch (IOException e) {
+			logger.warn("Could not resolve the latest crawl run", e);
+		}
+		
+		if (latest != null && latest.isResumable(resumeMaxAgeMillis)) {
+			logger.info("Resuming unfinished " + latest);
+			latest.setState(CrawlRun.State.RUNNING);
+			storage.updateCrawlRun(latest);
+			crawl(baseLinks, latest, new DateTime());
+			return;
+		}
+		
+		if (latest != null && latest.isResumable()) {
+			logger.info("Abandoning outdated " + latest);
+			latest.setState(CrawlRun.State.ABANDONED);
+			latest.setEndTime(new DateTime());
+			storage.updateCrawlRun(latest);
+			storage.updateMetadata(new Metadata(String.format(
+					"Crawl run %s started at %s is too old to be resumed, starting a new one.",
+					latest.getId(), latest.getStartTime())));
+		}
+		crawl(baseLinks, isFullCrawlDue());
+	}
+
+	/**
+	 * @return true if no full crawl has been done within the configured
+	 * full crawl period
+	 */
+	public synchronized boolean isFullCrawlDue() {
+		return lastFullCrawl == null
+				|| !lastFullCrawl.plusHours(fullCrawlPeriodHours).isAfterNow();
+	}
+
+	/**
+	 * Crawls all provided base links and blocks until every host group
+	 * has finished. An incremental crawl stops the pagination of a base link
+	 * as soon as the configured number of consecutive pages only contained
+	 * already known ads. A full crawl walks all pages.
+	 * 
+	 * @param baseLinks the base links to crawl
+	 * @param fullCrawl if all pages should be crawled
+	 * @throws InterruptedException if the calling thread was interrupted
+	 * while waiting for the workers
+	 */
+	public void crawl(List<String> baseLinks, boolean fullCrawl) throws InterruptedException {
+		CrawlRun run;
+		try {
+			run = storage.startCrawlRun(new DateTime(), fullCrawl);
+		} catch (IOException e) {
+			throw new IllegalStateException("Could not start crawl run", e);
+		}
+		crawl(baseLinks, run, run.getStartTime());
+	}
+
+	/**
+	 * @param sessionStart the start of this session of the run, new ads
+	 * are stamped with it
+	 */
+	private void crawl(List<String> baseLinks, final CrawlRun run,
+			DateTime sessionStart) throws InterruptedException {
+		crawlLock.lock();
+		try {
+			if (shuttingDown) {
+				return;
+			}
+			runCrawl(baseLinks, run, sessionStart);
+		} finally {
+			crawlLock.unlock();
+		}
+	}
+
+	private void runCrawl(List<String> baseLinks, final CrawlRun run,
+			final DateTime sessionStart) throws InterruptedException {
+		final boolean fullCrawl = run.isFullCrawl();
+		logger.info(String.format("Starting to parse ad entries (%s crawl)...",
+				fullCrawl ? "full" : "incremental"));
+		final AtomicInteger insertedCount = new AtomicInteger(run.getInsertedCount());
+		final AtomicInteger crawlerCount = new AtomicInteger();
+		FetchStatistics statsBefore = this.fetcher.getStatistics();
+
+		final Map<String, CrawlCheckpoint> checkpoints = resolveCheckpoints(run);
+
+		List<Future<?>> futures = new ArrayList<>();
+		for (final List<String> hostLinks : groupByHost(baseLinks).values()) {
+			futures.add(this.executor.submit(new Runnable() {
+
+				@Override
+				public void run() {
+					for (String baseLink : hostLinks) {
+						if (Thread.currentThread().isInterrupted()) {
+							return;
+						}
+						crawlBaseLink(baseLink, run, sessionStart, checkpoints.get(baseLink),
+								insertedCount, crawlerCount);
+					}
+				}
+			}));
+		}
+
+		try {
+			for (Future<?> f : futures) {
+				try {
+					f.get();
+				} catch (ExecutionException e) {
+					logger.warn(e.getMessage(), e);
+					Metadata md = new Metadata("Exception during crawl: "+e.getCause().getMessage());
+					storage.updateMetadata(md);
+				} catch (CancellationException e) {
+					logger.debug("Crawl of a host group has been cancelled.");
+				}
+			}
+		} catch (InterruptedException e) {
+			for (Future<?> f : futures) {
+				f.cancel(true);
+			}
+			run.setInsertedCount(insertedCount.get());
+			run.setState(CrawlRun.State.INTERRUPTED);
+			storage.updateCrawlRun(run);
+			throw e;
+		}
+
+		FetchStatistics stats = this.fetcher.getStatistics().since(statsBefore);
+		logger.info("HTTP connection usage of this crawl: " + stats);
+		for (Map.Entry<String, TransferVolume> e : stats.getTransfers().entrySet()) {
+			logger.info(String.format("Transfer volume of %s: %s", e.getKey(), e.getValue()));
+		}
+
+		run.setInsertedCount(insertedCount.get());
+		if (shuttingDown) {
+			run.setState(CrawlRun.State.INTERRUPTED);
+			storage.updateCrawlRun(run);
+			storage.updateMetadata(new Metadata(String.format(
+					"Crawl run %s interrupted after %s new entries, it will be resumed.",
+					run.getId(), insertedCount.get())));
+			return;
+		}
+		
+		run.setState(CrawlRun.State.FINISHED);
+		run.setEndTime(new DateTime());
+		storage.updateCrawlRun(run);
+
+		if (fullCrawl) {
+			synchronized (this) {
+				lastFullCrawl = run.getStartTime();
+			}
+		}
+
+		Metadata md = new Metadata(String.format(
+				"%s crawl: Added %s new entries. %s crawlers have been used. HTTP: %s",
+				fullCrawl ? "Full" : "Incremental", insertedCount.get(), crawlerCount.get(), stats));
+		storage.updateMetadata(md);
+	}
+
+	private Map<String, CrawlCheckpoint> resolveCheckpoints(CrawlRun run) {
+		try {
+			return storage.getCheckpoints(run.getId());
+		} catch (IOException e) {
+			logger.warn("Could not resolve checkpoints of " + run, e);
+			return Collections.emptyMap();
+		}
+	}
+
+	/**
+	 * crawls the pages of the base link, starting at the checkpoint if
+	 * one is provided. A checkpoint is stored after every page.
+	 */
+	protected void crawlBaseLink(String baseLink, CrawlRun run, DateTime sessionStart,
+			CrawlCheckpoint checkpoint, AtomicInteger insertedCount, AtomicInteger crawlerCount) {
+		if (checkpoint != null && checkpoint.isFinished()) {
+			logger.info("Baselink already crawled in this run: " + baseLink);
+			return;
+		}
+		logger.info("Baselink = " + baseLink);
+		DateTime now = sessionStart;
+		boolean fullCrawl = run.isFullCrawl();
+
+		Crawler crawler;
+		try {
+			crawler = resolveCrawler(baseLink);
+		} catch (UnsupportedBaseLinkException e) {
+			logger.warn(e.getMessage(), e);
+			return;
+		}
+
+		crawlerCount.incrementAndGet();
+
+		CircuitBreaker breaker = resolveCircuitBreaker(resolveHost(baseLink));
+		int page = crawler.getFirstPageIndex();
+		int knownPages = 0;
+		if (checkpoint != null) {
+			page = checkpoint.getNextPage();
+			knownPages = checkpoint.getKnownPages();
+			logger.info(String.format("Resuming %s at page %s", baseLink, page));
+		}
+		PendingPage pending = null;
+		try {
+			pending = prefetch(crawler.prepareLinkForPage(baseLink, page), breaker);
+			if (pending == null) {
+				logger.info(String.format("Circuit of %s is open, skipping %s",
+						breaker.getName(), baseLink));
+			}
+			while (pending != null) {
+				PendingPage current = pending;
+				pending = null;
+				String link = current.getUrl();
+				logger.info("Parsing page " + page);
+				page++;
+
+				try {
+					Page fetched = current.get();
+					if (fetched.getStatusCode() >= HttpStatus.SC_INTERNAL_SERVER_ERROR) {
+						recordFailure(breaker, "status " + fetched.getStatusCode() + " for " + link);
+						break;
+					}
+					
+					PageValidator validator = current.getValidator();
+					if (fetched.isNotModified() && validator != null) {
+						/*
+						 * unchanged since the last crawl, its ads are already stored
+						 */
+						recordSuccess(breaker);
+						logger.info("Page not modified, skipping parsing: " + link);
+						if (validator.getAdIds().isEmpty()) {
+							break;
+						}
+						knownPages++;
+						storeCheckpoint(run, baseLink, page, knownPages, false);
+						if (continuePagination(fullCrawl, knownPages)) {
+							pending = prefetch(crawler.prepareLinkForPage(baseLink, page), breaker);
+						}
+						continue;
+					}
+					
+					if (!fetched.isSuccessful()) {
+						break;
+					}
+
+					/*
+					 * fetch the next page while this one is parsed. it is
+					 * cancelled if this page turns out to be the last one
+					 */
+					pending = prefetch(crawler.prepareLinkForPage(baseLink, page), breaker);
+
+					List<Ad> items = parse(fetched.getContent(), crawler);
+					if (items == null) {
+						items = Collections.emptyList();
+					}
+					recordSuccess(breaker);
+					
+					if (items.size() > 0) {
+						int newCount = compareAndStoreItems(items, now);
+						insertedCount.addAndGet(newCount);
+						knownPages = newCount == 0 ? knownPages + 1 : 0;
+					}
+
+					/*
+					 * only remember the validators once the ads are stored
+					 */
+					PageValidator newValidator = PageValidator.forItems(link,
+							fetched.getEtag(), fetched.getLastModified(), items);
+					if (newValidator.isValidatable()) {
+						storage.storePageValidator(newValidator);
+					}
+					storeCheckpoint(run, baseLink, page, knownPages, false);
+					
+					if (items.size() == 0 || !continuePagination(fullCrawl, knownPages)) {
+						break;
+					}
+					
+					if (pending == null) {
+						/*
+						 * the speculative fetch was denied while the circuit
+						 * was probed, the probe has succeeded in the meantime
+						 */
+						pending = prefetch(crawler.prepareLinkForPage(baseLink, page), breaker);
+					}
+				} catch (IOException | CrawlerException e) {
+					if (shuttingDown) {
+						break;
+					}
+					logger.warn(e.getMessage(), e);
+					Metadata md = new Metadata("Exception during crawl: "+e.getMessage());
+					storage.updateMetadata(md);
+					recordFailure(breaker, e.getMessage());
+					break;
+				}
+			}
+		} catch (InterruptedException e) {
+			logger.info("Crawl of " + baseLink + " has been interrupted.");
+			Thread.currentThread().interrupt();
+		} catch (IOException | RuntimeException e) {
+			logger.warn(e.getMessage(), e);
+			Metadata md = new Metadata("Exception during crawl: "+e.getMessage());
+			storage.updateMetadata(md);
+		} finally {
+			if (pending != null) {
+				pending.cancel();
+			}
+		}
+
+		if (shuttingDown || Thread.currentThread().isInterrupted()) {
+			return;
+		}
+		storeCheckpoint(run, baseLink, page, knownPages, true);
+
+		if (!fullCrawl && knownPages >= incrementalStopPages) {
+			logger.info(String.format("Stopped pagination of %s after %s pages with known ads only.",
+					baseLink, knownPages));
+		}
+		logger.info("finished parsing ad entries of " + baseLink);
+	}
+
+	private void storeCheckpoint(CrawlRun run, String baseLink, int nextPage,
+			int knownPages, boolean finished) {
+		storage.storeCheckpoint(new CrawlCheckpoint(run.getId(), baseLink,
+				nextPage, knownPages, finished));
+	}
+
+	private boolean continuePagination(boolean fullCrawl, int knownPages) {
+		return fullCrawl || knownPages < incrementalStopPages;
+	}
+
+	/**
+	 * @return the pending fetch or null if the circuit of the provider is open
+	 */
+	PendingPage prefetch(String link, CircuitBreaker breaker) throws IOException {
+		if (!breaker.allowRequest()) {
+			return null;
+		}
+		PageValidator validator = storage.getPageValidator(link);
+		return fetcher.fetchAsync(link, validator, this.prefetchExecutor);
+	}
+
+	private CircuitBreaker resolveCircuitBreaker(String host) {
+		CircuitBreaker breaker = circuitBreakers.get(host);
+		if (breaker == null) {
+			CircuitBreaker created = new CircuitBreaker(host, breakerFailureThreshold,
+					breakerOpenMinutes * 60L * 1000L);
+			breaker = circuitBreakers.putIfAbsent(host, created);
+			if (breaker == null) {
+				breaker = created;
+			}
+		}
+		return breaker;
+	}
+
+	private void recordSuccess(CircuitBreaker breaker) {
+		if (breaker.recordSuccess() != CircuitBreaker.State.CLOSED) {
+			logger.info("Circuit of " + breaker.getName() + " closed again");
+			storage.updateMetadata(new Metadata(String.format(
+					"Provider %s is available again, circuit closed.", breaker.getName())));
+		}
+	}
+
+	private void recordFailure(CircuitBreaker breaker, String reason) {
+		if (breaker.recordFailure() == CircuitBreaker.State.OPEN) {
+			logger.warn(String.format("Circuit of %s opened after %s consecutive failures",
+					breaker.getName(), breaker.getConsecutiveFailures()));
+			storage.updateMetadata(new Metadata(String.format(
+					"Provider %s failed %s times in a row (%s), circuit opened for %s minutes.",
+					breaker.getName(), breaker.getConsecutiveFailures(), reason, breakerOpenMinutes)));
+		}
+	}
+
+	private List<Ad> parse(StringBuilder content, Crawler crawler)
+			throws CrawlerException {
+		try {
+			StringBuilder sb = crawler.preprocessContent(content);
+
+			logger.debug("Parsing content: " + sb.toString());
+			return crawler.parseDom(sb);
+		} catch (IOException e) {
+			logger.warn(e.getMessage(), e);
+			throw new CrawlerException(e);
+		}
+	}
+
+	protected Crawler resolveCrawler(String baseLink)
+			throws UnsupportedBaseLinkException {
+		for (Crawler crawler : crawlers) {
+			if (crawler.supportsParsing(baseLink)) {
+				return crawler;
+			}
+		}
+
+		throw new UnsupportedBaseLinkException(
+				"No crawler available for baselink: " + baseLink);
+	}
+
+	protected int compareAndStoreItems(List<Ad> items, DateTime now) {
+		for (Ad ad : items) {
+			ad.setDateTime(now);
+		}
+
+		List<Ad> newItems = this.storage.storeItemsAndProvideNew(items);
+		if (newItems != null && newItems.size() > 0) {
+			this.notification.notifyOnNewItems(newItems);
+		}
+		
+		return newItems == null ? 0 : newItems.size();
+	}
+
+	/**
+	 * groups the links by their host, keeping the order of
+	 * the links within each group.
+	 */
+	private static Map<String, List<String>> groupByHost(List<String> baseLinks) {
+		Map<String, List<String>> result = new LinkedHashMap<>();
+		for (String baseLink : baseLinks) {
+			String host = resolveHost(baseLink);
+			if (!result.containsKey(host)) {
+				result.put(host, new ArrayList<String>());
+			}
+			result.get(host).add(baseLink);
+		}
+		return result;
+	}
+
+	protected static String resolveHost(String link) {
+		try {
+			String host = URI.create(link.trim()).getHost();
+			if (host != null) {
+				return host.toLowerCase();
+			}
+		} catch (IllegalArgumentException e) {
+			logger.debug("Could not resolve host of " + link, e);
+		}
+		return link;
+	}
+
+	/**
+	 * stops all workers and waits until a running crawl has stored its
+	 * state, so that it can be resumed after the next start.
+	 */
+	public void shutdown() {
+		this.shuttingDown = true;
+		cancelQueued(this.executor.shutdownNow());
+		cancelQueued(this.prefetchExecutor.shutdownNow());
+		try {
+			if (!this.executor.awaitTermination(10, TimeUnit.SECONDS)) {
+				logger.warn("Crawl workers did not terminate in time.");
+			}
+			if (!this.prefetchExecutor.awaitTermination(10, TimeUnit.SECONDS)) {
+				logger.warn("Prefetch workers did not terminate in time.");
+			}
+			if (this.crawlLock.tryLock(10, TimeUnit.SECONDS)) {
+				this.crawlLock.unlock();
+			} else {
+				logger.warn("Crawl run did not store its state in time.");
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * tasks that never started would otherwise block their waiting callers
+	 */
+	private static void cancelQueued(List<Runnable> queued) {
+		for (Runnable r : queued) {
+			if (r instanceof Future<?>) {
+				((Future<?>) r).cancel(false);
+			}
+		}
+	}
+
+	private static class CrawlThreadFactory implements ThreadFactory {
+
+		private final AtomicInteger count = new AtomicInteger();
+		private final String prefix;
+
+		public CrawlThreadFactory(String prefix) {
+			this.prefix = prefix;
+		}
+
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread t = new Thread(r, prefix + count.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		}
+
+	}
+
+}
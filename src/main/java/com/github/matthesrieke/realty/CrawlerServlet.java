@@ -15,6 +15,7 @@
  */
 package com.github.matthesrieke.realty;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
@@ -26,6 +27,7 @@ import java.util.Scanner;
 import java.util.ServiceLoader;
 import java.util.Timer;
 import java.util.TimerTask;
+import java.util.concurrent.TimeUnit;
 
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServlet;
@@ -33,18 +35,16 @@ import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
 import org.apache.http.HttpStatus;
-import org.apache.http.client.config.RequestConfig;
-import org.apache.http.client.methods.CloseableHttpResponse;
-import org.apache.http.client.methods.HttpGet;
-import org.apache.http.impl.client.CloseableHttpClient;
-import org.apache.http.impl.client.HttpClientBuilder;
 import org.joda.time.DateTime;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.github.matthesrieke.realty.crawler.Crawler;
+import com.github.matthesrieke.realty.crawler.RuleBasedCrawler;
+import com.github.matthesrieke.realty.http.PageFetcher;
 import com.github.matthesrieke.realty.notification.BasicNotification;
 import com.github.matthesrieke.realty.notification.Notification;
+import com.github.matthesrieke.realty.rules.ExtractionRules;
 import com.github.matthesrieke.realty.storage.H2Storage;
 import com.github.matthesrieke.realty.storage.Metadata;
 import com.github.matthesrieke.realty.storage.Storage;
@@ -62,6 +62,8 @@ public class CrawlerServlet extends HttpServlet {
 	private Properties properties;
 	private ArrayList<Crawler> crawlers;
 	private Storage storage;
+	private CrawlEngine engine;
+	private PageFetcher fetcher;
 	private StringBuilder listTemplate;
 	private StringBuilder groupTemplate;
 	private List<String> crawlLinks = new ArrayList<>();
@@ -92,85 +94,31 @@ public class CrawlerServlet extends HttpServlet {
 		readCrawlingLinks();
 		
 		String preferredDatabaseLocation = properties.getProperty("DATABASE_DIR");
-		storage = new H2Storage(preferredDatabaseLocation);
+		storage = new H2Storage(preferredDatabaseLocation,
+				Boolean.parseBoolean(properties.getProperty("storageCompression", "false").trim()));
+
+		this.fetcher = new PageFetcher(this.properties);
+		this.engine = new CrawlEngine(this.crawlers, storage, notification,
+				this.fetcher, this.properties);
 
 		this.timer = new Timer();
 		
 		Integer crawlPeriod = Util.getIntegerProperty(this.properties, "crawlPeriodHours", 6);
-		logger.info(String.format("Scheduling crawl every %s hours.", crawlPeriod));
+		long periodMillis = 1000L * 60 * 60 * crawlPeriod;
+		/*
+		 * a redeploy resumes an interrupted run right away but does not
+		 * repeat a run that finished recently
+		 */
+		long initialDelay = this.engine.getInitialDelay(periodMillis);
+		logger.info(String.format("Scheduling crawl every %s hours, next run in %s minutes.",
+				crawlPeriod, TimeUnit.MILLISECONDS.toMinutes(initialDelay)));
 		
 		this.timer.scheduleAtFixedRate(new TimerTask() {
 
 			@Override
 			public void run() {
-				logger.info("Starting to parse ad entries...");
-				DateTime now = new DateTime();
-
-				int insertedCount = 0;
-				int crawlerCount = 0;
-				
 				try {
-					for (String baseLink : crawlLinks) {
-						logger.info("Baselink = " + baseLink);
-
-						Crawler crawler;
-						try {
-							crawler = resolveCrawler(baseLink);
-						} catch (UnsupportedBaseLinkException e1) {
-							logger.warn(e1.getMessage(), e1);
-							break;
-						}
-						
-						crawlerCount++;
-
-						String link;
-						int page = crawler.getFirstPageIndex();
-						while (true) {
-							Thread.sleep(1000);
-							logger.info("Parsing page " + page);
-
-							link = crawler.prepareLinkForPage(baseLink, page);
-							HttpGet get = new HttpGet(link);
-							page++;
-
-							CloseableHttpClient client = HttpClientBuilder
-									.create()
-									.setDefaultRequestConfig(
-											RequestConfig.custom()
-													.setConnectTimeout(20000)
-													.build()).build();
-							try {
-								CloseableHttpResponse resp = client
-										.execute(get);
-								if (resp.getStatusLine().getStatusCode() < HttpStatus.SC_MULTIPLE_CHOICES) {
-									InputStream content = resp.getEntity()
-											.getContent();
-
-									List<Ad> items = parse(content, crawler);
-									if (items == null || items.size() == 0) {
-										break;
-									}
-
-									insertedCount += compareAndStoreItems(items, now);
-
-								} else {
-									break;
-								}
-							} catch (IOException | CrawlerException e) {
-								logger.warn(e.getMessage(), e);
-								Metadata md = new Metadata("Exception during crawl: "+e.getMessage());
-								storage.updateMetadata(md);
-								break;
-							}
-
-						}
-
-						logger.info("finished parsing ad entries!");
-					}
-					
-					Metadata md = new Metadata(String.format(
-							"Added %s new entries. %s crawlers have been used", insertedCount, crawlerCount));
-					storage.updateMetadata(md);
+					engine.crawl(crawlLinks);
 				} catch (RuntimeException | InterruptedException e) {
 					logger.warn(e.getMessage(), e);
 					
@@ -179,7 +127,7 @@ public class CrawlerServlet extends HttpServlet {
 				}
 				
 			}
-		}, 0, 1000 * 60 * 60 * crawlPeriod);
+		}, initialDelay, periodMillis);
 	}
 
 	private void readCrawlingLinks() {
@@ -204,32 +152,24 @@ public class CrawlerServlet extends HttpServlet {
 		for (Crawler crawler : loader) {
 			this.crawlers.add(crawler);
 		}
-	}
-
-	private List<Ad> parse(InputStream is, Crawler crawler)
-			throws CrawlerException {
-		try {
-			StringBuilder sb = Util.parseStream(is);
-			sb = crawler.preprocessContent(sb);
-
-			logger.debug("Parsing content: " + sb.toString());
-			return crawler.parseDom(sb);
-		} catch (IOException e) {
-			logger.warn(e.getMessage(), e);
-			throw new CrawlerException(e);
-		}
-	}
-
-	protected Crawler resolveCrawler(String baseLink)
-			throws UnsupportedBaseLinkException {
-		for (Crawler crawler : crawlers) {
-			if (crawler.supportsParsing(baseLink)) {
-				return crawler;
+		
+		/*
+		 * HTML providers are declared by their extraction rules, an
+		 * optional directory allows to fix the rules without a redeploy
+		 */
+		String directory = this.properties.getProperty("rules.directory", "").trim();
+		File rulesDirectory = directory.isEmpty() ? null : new File(directory);
+		for (String provider : this.properties.getProperty("rules.providers", "").split(",")) {
+			provider = provider.trim();
+			if (provider.isEmpty()) {
+				continue;
+			}
+			try {
+				this.crawlers.add(new RuleBasedCrawler(ExtractionRules.load(provider, rulesDirectory)));
+			} catch (IOException | IllegalArgumentException e) {
+				logger.warn("Could not load the extraction rules of " + provider, e);
 			}
 		}
-
-		throw new UnsupportedBaseLinkException(
-				"No crawler available for baselink: " + baseLink);
 	}
 
 	@Override
@@ -288,7 +228,11 @@ public class CrawlerServlet extends HttpServlet {
 			StringBuilder adsBuilder = new StringBuilder();
 			List<Ad> ads = items.get(a);
 			for (Ad ad : ads) {
-				adsBuilder.append(ad.toHTML());
+				try {
+					ad.writeHTML(adsBuilder);
+				} catch (IOException e) {
+					throw new IllegalStateException(e);
+				}
 			}
 			sb.append(this.groupTemplate.toString()
 					.replace("${GROUP_DATE}", a.toString(Util.GER_DATE_FORMAT))
@@ -303,21 +247,10 @@ public class CrawlerServlet extends HttpServlet {
 		super.destroy();
 
 		this.timer.cancel();
+		this.engine.shutdown();
+		this.fetcher.shutdown();
 		this.storage.shutdown();
 		this.notification.shutdown();
 	}
 
-	protected int compareAndStoreItems(List<Ad> items, DateTime now) {
-		for (Ad ad : items) {
-			ad.setDateTime(now);
-		}
-
-		List<Ad> newItems = this.storage.storeItemsAndProvideNew(items);
-		if (newItems != null && newItems.size() > 0) {
-			this.notification.notifyOnNewItems(newItems);
-		}
-		
-		return newItems == null ? 0 : newItems.size();
-	}
-
 }
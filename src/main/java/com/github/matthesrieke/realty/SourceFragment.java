@@ -0,0 +1,58 @@
+/**
+ * Copyright (C) 2015 Matthes Rieke
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.matthesrieke.realty;
+
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The markup an ad was extracted from, detached from the page. The
+ * fragment is kept as UTF-8 bytes and only decoded when it is read, so an
+ * ad references neither the page nor a tree built from it.
+ */
+public final class SourceFragment implements Serializable {
+
+	private static final long serialVersionUID = 2186507382862015634L;
+
+	private final byte[] bytes;
+
+	private SourceFragment(byte[] bytes) {
+		this.bytes = bytes;
+	}
+
+	/**
+	 * @param markup the markup, copied into the fragment
+	 */
+	public static SourceFragment of(CharSequence markup) {
+		return new SourceFragment(markup.toString().getBytes(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * @return the size of the fragment in bytes
+	 */
+	public int size() {
+		return bytes.length;
+	}
+
+	/**
+	 * @return the markup, decoded on every call
+	 */
+	@Override
+	public String toString() {
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+}
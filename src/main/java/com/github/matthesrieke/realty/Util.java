@@ -20,15 +20,18 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.text.DecimalFormatSymbols;
+import java.util.Locale;
 import java.util.Properties;
-import java.util.Scanner;
 
-import javax.xml.namespace.QName;
-
-import org.apache.xmlbeans.XmlCursor;
-import org.apache.xmlbeans.XmlObject;
-import org.apache.xmlbeans.XmlOptions;
-import org.apache.xmlbeans.impl.store.Path;
 import org.joda.time.format.DateTimeFormat;
 import org.joda.time.format.DateTimeFormatter;
 import org.slf4j.Logger;
@@ -38,39 +41,97 @@ public class Util {
 
 	private static final Logger logger = LoggerFactory.getLogger(Util.class);
 	public static final DateTimeFormatter GER_DATE_FORMAT = DateTimeFormat.forPattern("dd.MM.yyyy HH:mm");
+
+	private static final int STREAM_BUFFER_SIZE = 16 * 1024;
+	private static final int MAX_PRESIZE = 16 * 1024 * 1024;
+	private static final ThreadLocal<ByteBuffer> BYTE_BUFFER = new ThreadLocal<ByteBuffer>() {
+		@Override
+		protected ByteBuffer initialValue() {
+			return ByteBuffer.allocate(STREAM_BUFFER_SIZE);
+		}
+	};
+	private static final ThreadLocal<CharBuffer> CHAR_BUFFER = new ThreadLocal<CharBuffer>() {
+		@Override
+		protected CharBuffer initialValue() {
+			return CharBuffer.allocate(STREAM_BUFFER_SIZE);
+		}
+	};
 	
 	/**
-	 * This method allows XPath 2.0 expressions with XmlBeans 2.4.0+ It uses a
-	 * wrapper to access Saxon-HE 9.4.0.6
-	 *
-	 * @param path
-	 *            the XPath expression
-	 * @param xo
-	 *            the Xmlobject
-	 * @param opts
-	 *            XmlOptions
-	 * @return the resulting XmlObject array
+	 * Reads the stream as UTF-8. Errors are logged and the content read
+	 * so far is returned.
 	 */
-	public static XmlObject[] selectPath(String path, XmlObject xo,
-			XmlOptions opts) {
-		opts.put(Path.PATH_DELEGATE_INTERFACE,
-				SaxonXPath.class.getCanonicalName());
-		return xo.selectPath(path, opts);
+	public static StringBuilder parseStream(InputStream is) {
+		StringBuilder sb = new StringBuilder(STREAM_BUFFER_SIZE);
+		try {
+			readStream(is, StandardCharsets.UTF_8, sb);
+		} catch (IOException e) {
+			logger.warn("Could not read stream completely", e);
+		}
+		return sb;
 	}
-	
-	public static XmlObject[] selectPath(String path, XmlObject xo) {
-		return selectPath(path, xo, new XmlOptions());
+
+	/**
+	 * Decodes the stream directly into a {@link StringBuilder} using thread-local
+	 * byte and char buffers. Line endings are kept as they are.
+	 * 
+	 * @param is the stream, closed after reading
+	 * @param charset the charset of the content, UTF-8 if null
+	 * @param sizeHint the expected number of bytes or a negative value if unknown
+	 * @return the decoded content
+	 * @throws IOException if reading the stream fails
+	 */
+	public static StringBuilder readStream(InputStream is, Charset charset,
+			long sizeHint) throws IOException {
+		int capacity = sizeHint > 0 ? (int) Math.min(sizeHint, MAX_PRESIZE) : STREAM_BUFFER_SIZE;
+		StringBuilder sb = new StringBuilder(capacity);
+		readStream(is, charset, sb);
+		return sb;
 	}
 
-	public static StringBuilder parseStream(InputStream is) {
-		Scanner sc = new Scanner(is, "UTF-8");
-		StringBuilder sb = new StringBuilder();
-		while (sc.hasNext()) {
-			sb.append(sc.nextLine());
-			sb.append(System.getProperty("line.separator"));
+	private static void readStream(InputStream is, Charset charset,
+			StringBuilder sb) throws IOException {
+		CharsetDecoder decoder = (charset == null ? StandardCharsets.UTF_8 : charset)
+				.newDecoder()
+				.onMalformedInput(CodingErrorAction.REPLACE)
+				.onUnmappableCharacter(CodingErrorAction.REPLACE);
+		
+		ByteBuffer bytes = BYTE_BUFFER.get();
+		CharBuffer chars = CHAR_BUFFER.get();
+		bytes.clear();
+		chars.clear();
+		
+		try {
+			int read;
+			while ((read = is.read(bytes.array(), bytes.arrayOffset() + bytes.position(),
+					bytes.remaining())) != -1) {
+				bytes.position(bytes.position() + read);
+				bytes.flip();
+				decode(decoder, bytes, chars, false, sb);
+				bytes.compact();
+			}
+			bytes.flip();
+			decode(decoder, bytes, chars, true, sb);
+			decoder.flush(chars);
+			drain(chars, sb);
+		} finally {
+			is.close();
 		}
-		sc.close();
-		return sb;
+	}
+
+	private static void decode(CharsetDecoder decoder, ByteBuffer bytes,
+			CharBuffer chars, boolean endOfInput, StringBuilder target) {
+		CoderResult result;
+		do {
+			result = decoder.decode(bytes, chars, endOfInput);
+			drain(chars, target);
+		} while (result.isOverflow());
+	}
+
+	private static void drain(CharBuffer chars, StringBuilder target) {
+		chars.flip();
+		target.append(chars.array(), chars.arrayOffset() + chars.position(), chars.remaining());
+		chars.clear();
 	}
 
 	public static void replaceAll(StringBuilder builder, String[][] replacements) {
@@ -87,16 +148,6 @@ public class Util {
 		
 	}
 	
-	public static String parseAttribute(XmlObject[] title, String attribute) {
-		if (title != null && title.length > 0) {
-			XmlCursor cur = title[0].newCursor();
-			String result = cur.getAttributeText(new QName("", "href"));
-			cur.dispose();
-			return result;
-		}
-		return null;
-	}
-	
 	public static <T> byte[] serialize(T object) throws IOException {
 		ByteArrayOutputStream bos = new ByteArrayOutputStream();
 		ObjectOutputStream oos = new ObjectOutputStream(bos);
@@ -119,6 +170,60 @@ public class Util {
 		}
 	}
 
+	/**
+	 * Parses the first number of a text such as "1.234,56 €" or "71 m²"
+	 * with the separators of the locale. A grouping separator which is
+	 * not followed by three digits is read as decimal separator, e.g. in
+	 * "3.5 Zimmer" of a German page.
+	 * 
+	 * @return the number or null if the text contains none
+	 */
+	public static BigDecimal parseNumber(String text, Locale locale) {
+		if (text == null) {
+			return null;
+		}
+		DecimalFormatSymbols symbols = DecimalFormatSymbols.getInstance(locale);
+		char decimal = symbols.getDecimalSeparator();
+		char grouping = symbols.getGroupingSeparator();
+		
+		int i = 0;
+		while (i < text.length() && !Character.isDigit(text.charAt(i))) {
+			i++;
+		}
+		if (i == text.length()) {
+			return null;
+		}
+		
+		StringBuilder number = new StringBuilder();
+		boolean fraction = false;
+		for (; i < text.length(); i++) {
+			char c = text.charAt(i);
+			if (Character.isDigit(c)) {
+				number.append(Character.forDigit(Character.digit(c, 10), 10));
+			}
+			else if (fraction || !isDigit(text, i + 1)) {
+				break;
+			}
+			else if (c == decimal || (c == grouping && !isDigitGroup(text, i + 1))) {
+				number.append('.');
+				fraction = true;
+			}
+			else if (c != grouping) {
+				break;
+			}
+		}
+		return new BigDecimal(number.toString());
+	}
+
+	private static boolean isDigit(String text, int index) {
+		return index < text.length() && Character.isDigit(text.charAt(index));
+	}
+
+	private static boolean isDigitGroup(String text, int index) {
+		return isDigit(text, index) && isDigit(text, index + 1) && isDigit(text, index + 2)
+				&& !isDigit(text, index + 3);
+	}
+
 	public static Integer getIntegerProperty(Properties properties, String string, int fallback) {
 		String resultString = properties.getProperty(string);
 		if (resultString != null && !resultString.isEmpty()) {
@@ -130,5 +235,17 @@ public class Util {
 		}
 		return fallback;
 	}
+
+	public static Double getDoubleProperty(Properties properties, String string, double fallback) {
+		String resultString = properties.getProperty(string);
+		if (resultString != null && !resultString.isEmpty()) {
+			try {
+				return Double.parseDouble(resultString.trim());
+			}
+			catch (NumberFormatException e) {
+			}
+		}
+		return fallback;
+	}
 	
 }
@@ -23,16 +23,23 @@ package com.github.matthesrieke.realty.crawler;
 
 import com.fasterxml.jackson.core.JsonFactory;
 import com.fasterxml.jackson.core.JsonParser;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.core.JsonToken;
 import com.github.matthesrieke.realty.Ad;
+import com.github.matthesrieke.realty.Ad.PropertyKeys;
+import com.github.matthesrieke.realty.CharSequenceReader;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.EnumMap;
 import java.util.List;
 import java.util.Map;
+import org.joda.time.DateTime;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
+ * Reads the ads from the result list model embedded into the page as
+ * JavaScript object. The model is streamed, only the results are read
+ * and every result is mapped straight into an {@link Ad}.
  *
  * @author Henning Bredel <h.bredel@52north.org>
  */
@@ -44,12 +51,36 @@ public class ImmobilienScout24Crawler implements Crawler {
 
     private static final String IS24_DATA = "IS24.resultList =";
 
+    private static final String EXPOSE_URL = "http://www.immobilienscout24.de/expose/";
+
+    private static final String PRIVATE_SELLER = "Privater Anbieter";
+
+    private static final String COMMERCIAL_SELLER = "Gewerblicher Anbieter";
+
+    /*
+     * thread-safe, the configuration is shared by all parsers
+     */
+    private static final JsonFactory JSON_FACTORY = new JsonFactory()
+            .enable(JsonParser.Feature.ALLOW_UNQUOTED_FIELD_NAMES)
+            .enable(JsonParser.Feature.ALLOW_SINGLE_QUOTES);
+
+    /**
+     * cuts the content down to the result list model, in place
+     */
     @Override
     public StringBuilder preprocessContent(StringBuilder content) {
         int startIndexIS24Data = content.indexOf(IS24_DATA);
+        if (startIndexIS24Data < 0) {
+            logger.warn("No result list found in the page");
+            content.setLength(0);
+            return content;
+        }
         int endOfIS24Data = content.indexOf("};", startIndexIS24Data) + 1; // cut ;
-        String data = content.substring(startIndexIS24Data + IS24_DATA.length(), endOfIS24Data);
-        return new StringBuilder(data);
+        if (endOfIS24Data > 0) {
+            content.setLength(endOfIS24Data);
+        }
+        content.delete(0, startIndexIS24Data + IS24_DATA.length());
+        return content;
     }
 
     @Override
@@ -59,242 +90,189 @@ public class ImmobilienScout24Crawler implements Crawler {
 
     @Override
     public List<Ad> parseDom(StringBuilder content) throws IOException {
-        ObjectMapper om = new ObjectMapper();
-        om.configure(JsonParser.Feature.ALLOW_UNQUOTED_FIELD_NAMES, true);
-
-        Map<String,Object> results = om.readValue(content.toString(), Map.class);
-        Map<String, Object> entries = (Map<String, Object>)results.get("model");
-        List<Map<String, Object>> immo24Ads = (List<Map<String, Object>>) entries.get("results");
-
-        List<Ad> ads = new ArrayList<Ad>();
-        for (Map<String, Object> parsedAd : immo24Ads) {
-            Immo24Ad immo24Ad = Immo24Ad.create(parsedAd);
-            Ad ad = Ad.forId(String.valueOf(immo24Ad.getId()));
-            ads.add(ad);
+        List<Ad> ads = new ArrayList<>();
+        DateTime crawlTime = new DateTime();
+
+        try (JsonParser parser = JSON_FACTORY.createParser(new CharSequenceReader(content))) {
+            if (parser.nextToken() != JsonToken.START_OBJECT
+                    || !skipToField(parser, "model") || !skipToField(parser, "results")) {
+                logger.warn("No results found in the result list model");
+                return ads;
+            }
+            if (parser.getCurrentToken() != JsonToken.START_ARRAY) {
+                return ads;
+            }
+
+            while (parser.nextToken() == JsonToken.START_OBJECT) {
+                Ad ad = parseResult(parser);
+                if (ad != null) {
+                    ad.setDateTime(crawlTime);
+                    ads.add(ad);
+                }
+            }
         }
 
         return ads;
     }
 
-    @Override
-	public int getFirstPageIndex() {
-        return 1;
+    /**
+     * advances within the current object to the value of the field
+     *
+     * @return false if the object does not contain the field
+     */
+    private static boolean skipToField(JsonParser parser, String name) throws IOException {
+        if (parser.getCurrentToken() != JsonToken.START_OBJECT) {
+            return false;
+        }
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            parser.nextToken();
+            if (field.equals(name)) {
+                return true;
+            }
+            parser.skipChildren();
+        }
+        return false;
     }
 
-    @Override
-	public String prepareLinkForPage(String baseLink, int page) {
-        return baseLink.replaceFirst("S-T/P-?/", "S-T/P-" + page + "/");
+    /**
+     * reads the result object the parser is positioned at
+     *
+     * @return the ad or null if the result has no id
+     */
+    private static Ad parseResult(JsonParser parser) throws IOException {
+        String id = null;
+        String address = null;
+        String city = null;
+        Map<PropertyKeys, String> properties = new EnumMap<>(PropertyKeys.class);
+        List<String> features = new ArrayList<>();
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken value = parser.nextToken();
+            switch (field) {
+            case "id":
+                id = parser.getText();
+                break;
+            case "title":
+                properties.put(PropertyKeys.DESCRIPTION, parser.getText());
+                break;
+            case "address":
+                address = parser.getText();
+                break;
+            case "city":
+                city = parser.getText();
+                break;
+            case "privateOffer":
+                properties.put(PropertyKeys.SELLER_TYPE, value == JsonToken.VALUE_TRUE
+                        ? PRIVATE_SELLER : COMMERCIAL_SELLER);
+                break;
+            case "pictureUrls":
+                List<String> pictures = parseStrings(parser);
+                if (!pictures.isEmpty()) {
+                    properties.put(PropertyKeys.IMAGE, pictures.get(0));
+                }
+                break;
+            case "attributes":
+                parseAttributes(parser, properties);
+                break;
+            case "checkedAttributes":
+                features.addAll(parseStrings(parser));
+                break;
+            default:
+                parser.skipChildren();
+                break;
+            }
+        }
+
+        if (id == null) {
+            logger.debug("Skipping result without an id");
+            return null;
+        }
+
+        Ad result = Ad.forId(EXPOSE_URL.concat(id));
+        for (Map.Entry<PropertyKeys, String> property : properties.entrySet()) {
+            result.putProperty(property.getKey(), property.getValue());
+        }
+        result.putProperty(PropertyKeys.LOCATION, address != null ? address : city);
+        result.setFeatureList(features);
+        result.putProperty(PropertyKeys.PROVIDER, PROVIDER_NAME);
+        return result;
     }
 
+    private static List<String> parseStrings(JsonParser parser) throws IOException {
+        List<String> result = new ArrayList<>();
+        if (parser.getCurrentToken() != JsonToken.START_ARRAY) {
+            parser.skipChildren();
+            return result;
+        }
+        JsonToken token;
+        while ((token = parser.nextToken()) != JsonToken.END_ARRAY && token != null) {
+            if (token == JsonToken.VALUE_STRING) {
+                result.add(parser.getText());
+            }
+            else {
+                parser.skipChildren();
+            }
+        }
+        return result;
+    }
 
-    static class Immo24Ad {
-
-        private int id;
-        private String cwid;
-        private boolean shortlisted;
-        private boolean privateOffer;
-        private String title;
-        private String address;
-        private String district;
-        private String city;
-        private String zip;
-        private int mediaCount;
-        private String[] pictureUrls;
-        private double distanceInKm;
-        private boolean hasNewFlag;
-        private boolean hasUpdateFlag;
-        private boolean hasFloorPlan;
-        private boolean hasValuation;
-        private String contactName;
-        private AdProperties[] attributes;
-        private String[] checkedAttributes;
-
-        private Immo24Ad() {}
-
-        public static Immo24Ad create(Map<String, Object> ad) {
-            Immo24Ad immo24Ad = new Immo24Ad();
-            immo24Ad.setAddress((String) ad.get("address"));
-            immo24Ad.setCity((String) ad.get("city"));
-            immo24Ad.setId((int) ad.get("id"));
-            immo24Ad.setPictureUrls((String[]) ad.get("pictureUrls"));
-            return immo24Ad;
-        }
-
-        public int getId() {
-            return id;
-        }
-
-        public void setId(int id) {
-            this.id = id;
-        }
-
-        public String getCwid() {
-            return cwid;
-        }
-
-        public void setCwid(String cwid) {
-            this.cwid = cwid;
-        }
-
-        public boolean isShortlisted() {
-            return shortlisted;
-        }
-
-        public void setShortlisted(boolean shortlisted) {
-            this.shortlisted = shortlisted;
-        }
-
-        public boolean isPrivateOffer() {
-            return privateOffer;
-        }
-
-        public void setPrivateOffer(boolean privateOffer) {
-            this.privateOffer = privateOffer;
-        }
-
-        public String getTitle() {
-            return title;
-        }
-
-        public void setTitle(String title) {
-            this.title = title;
-        }
-
-        public String getAddress() {
-            return address;
-        }
-
-        public void setAddress(String address) {
-            this.address = address;
-        }
-
-        public String getDistrict() {
-            return district;
-        }
-
-        public void setDistrict(String district) {
-            this.district = district;
-        }
-
-        public String getCity() {
-            return city;
-        }
-
-        public void setCity(String city) {
-            this.city = city;
-        }
-
-        public String getZip() {
-            return zip;
-        }
-
-        public void setZip(String zip) {
-            this.zip = zip;
-        }
-
-        public int getMediaCount() {
-            return mediaCount;
-        }
-
-        public void setMediaCount(int mediaCount) {
-            this.mediaCount = mediaCount;
-        }
-
-        public String[] getPictureUrls() {
-            return pictureUrls;
-        }
-
-        public void setPictureUrls(String[] pictureUrls) {
-            this.pictureUrls = pictureUrls;
-        }
-
-        public double getDistanceInKm() {
-            return distanceInKm;
-        }
-
-        public void setDistanceInKm(double distanceInKm) {
-            this.distanceInKm = distanceInKm;
-        }
-
-        public boolean isHasNewFlag() {
-            return hasNewFlag;
-        }
-
-        public void setHasNewFlag(boolean hasNewFlag) {
-            this.hasNewFlag = hasNewFlag;
-        }
-
-        public boolean isHasUpdateFlag() {
-            return hasUpdateFlag;
-        }
-
-        public void setHasUpdateFlag(boolean hasUpdateFlag) {
-            this.hasUpdateFlag = hasUpdateFlag;
-        }
-
-        public boolean isHasFloorPlan() {
-            return hasFloorPlan;
-        }
-
-        public void setHasFloorPlan(boolean hasFloorPlan) {
-            this.hasFloorPlan = hasFloorPlan;
-        }
-
-        public boolean isHasValuation() {
-            return hasValuation;
-        }
-
-        public void setHasValuation(boolean hasValuation) {
-            this.hasValuation = hasValuation;
-        }
-
-        public String getContactName() {
-            return contactName;
-        }
-
-        public void setContactName(String contactName) {
-            this.contactName = contactName;
-        }
-
-        public AdProperties[] getAttributes() {
-            return attributes;
-        }
-
-        public void setAttributes(AdProperties[] attributes) {
-            this.attributes = attributes;
-        }
-
-        public String[] getCheckedAttributes() {
-            return checkedAttributes;
-        }
-
-        public void setCheckedAttributes(String[] checkedAttributes) {
-            this.checkedAttributes = checkedAttributes;
+    /**
+     * reads the list of title and value pairs, e.g. "Kaltmiete": "450 €"
+     */
+    private static void parseAttributes(JsonParser parser, Map<PropertyKeys, String> properties)
+            throws IOException {
+        if (parser.getCurrentToken() != JsonToken.START_ARRAY) {
+            parser.skipChildren();
+            return;
+        }
+        while (parser.nextToken() == JsonToken.START_OBJECT) {
+            String title = null;
+            String value = null;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                parser.nextToken();
+                if (field.equals("title")) {
+                    title = parser.getText();
+                }
+                else if (field.equals("value")) {
+                    value = parser.getText();
+                }
+                else {
+                    parser.skipChildren();
+                }
+            }
+            if (title != null && value != null) {
+                PropertyKeys key = resolveAttribute(title);
+                if (key != null) {
+                    properties.put(key, value);
+                }
+            }
         }
-
-
     }
 
-    class AdProperties {
-        private String title;
-        private String value;
-
-        public String getTitle() {
-            return title;
+    private static PropertyKeys resolveAttribute(String title) {
+        if (title.equals("Kaltmiete")) {
+            return PropertyKeys.PRICE;
         }
-
-        public void setTitle(String title) {
-            this.title = title;
+        else if (title.contains("Zimmer")) {
+            return PropertyKeys.ROOMS;
         }
-
-        public String getValue() {
-            return value;
+        else if (title.contains("fläche")) {
+            return PropertyKeys.SPACE;
         }
+        return null;
+    }
 
-        public void setValue(String value) {
-            this.value = value;
-        }
+    @Override
+	public int getFirstPageIndex() {
+        return 1;
+    }
 
+    @Override
+	public String prepareLinkForPage(String baseLink, int page) {
+        return baseLink.replaceFirst("S-T/P-\\d+/", "S-T/P-" + page + "/");
     }
 
 }
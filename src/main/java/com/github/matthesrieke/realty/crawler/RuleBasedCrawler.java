@@ -0,0 +1,89 @@
+/**
+ * Copyright (C) 2015 Matthes Rieke
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.matthesrieke.realty.crawler;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.List;
+
+import com.github.matthesrieke.realty.Ad;
+import com.github.matthesrieke.realty.CharSequenceReader;
+import com.github.matthesrieke.realty.html.HtmlTokenizer;
+import com.github.matthesrieke.realty.rules.ExtractionRules;
+import com.github.matthesrieke.realty.rules.RuleMatcher;
+
+/**
+ * Crawls the HTML result pages of a provider as declared by its
+ * {@link ExtractionRules}. The page is streamed through a tolerant
+ * {@link HtmlTokenizer}, so no repair of the markup is required, and all
+ * ads are extracted in a single pass.
+ */
+public class RuleBasedCrawler implements Crawler {
+
+	private final ExtractionRules rules;
+
+	public RuleBasedCrawler(ExtractionRules rules) {
+		this.rules = rules;
+	}
+
+	/**
+	 * @param provider the name of the rules bundled with the application
+	 * @throws IOException if the rules cannot be read
+	 */
+	public static RuleBasedCrawler forProvider(String provider) throws IOException {
+		return new RuleBasedCrawler(ExtractionRules.load(provider, null));
+	}
+
+	/**
+	 * the tokenizer copes with the raw markup
+	 */
+	@Override
+	public StringBuilder preprocessContent(StringBuilder content) {
+		return content;
+	}
+
+	@Override
+	public boolean supportsParsing(String url) {
+		return rules.supportsParsing(url);
+	}
+
+	@Override
+	public List<Ad> parseDom(StringBuilder content) throws IOException {
+		return parse(new CharSequenceReader(content));
+	}
+
+	public List<Ad> parse(Reader markup) throws IOException {
+		RuleMatcher matcher = new RuleMatcher(rules);
+		new HtmlTokenizer(markup, matcher).parse();
+		return matcher.getAds();
+	}
+
+	@Override
+	public int getFirstPageIndex() {
+		return rules.getFirstPageIndex();
+	}
+
+	@Override
+	public String prepareLinkForPage(String baseLink, int page) {
+		return rules.prepareLinkForPage(baseLink, page);
+	}
+
+	@Override
+	public String toString() {
+		return "RuleBasedCrawler [" + rules.getProvider() + "]";
+	}
+
+}
@@ -0,0 +1,74 @@
+/**
+ * Copyright (C) 2015 Matthes Rieke
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.matthesrieke.realty.html;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * An open element as seen by the {@link HtmlTokenizer}. Element and
+ * attribute names are lower case.
+ */
+public class HtmlElement {
+
+	private final String name;
+	private final Map<String, String> attributes;
+	private final HtmlElement parent;
+
+	public HtmlElement(String name, Map<String, String> attributes,
+			HtmlElement parent) {
+		this.name = name;
+		this.attributes = attributes == null ? Collections.<String, String>emptyMap()
+				: Collections.unmodifiableMap(attributes);
+		this.parent = parent;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public Map<String, String> getAttributes() {
+		return attributes;
+	}
+
+	/**
+	 * @return the value of the attribute or null if not present
+	 */
+	public String getAttribute(String attribute) {
+		return attributes.get(attribute);
+	}
+
+	/**
+	 * @return the enclosing element or null for a top level element
+	 */
+	public HtmlElement getParent() {
+		return parent;
+	}
+
+	/**
+	 * @return true if the element has the name and its class attribute
+	 * equals the given value
+	 */
+	public boolean is(String elementName, String classValue) {
+		return name.equals(elementName) && classValue.equals(getAttribute("class"));
+	}
+
+	@Override
+	public String toString() {
+		return "<" + name + " " + attributes + ">";
+	}
+
+}
@@ -0,0 +1,92 @@
+/**
+ * Copyright (C) 2015 Matthes Rieke
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.matthesrieke.realty.html;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The named character references of HTML 4: Latin-1, special characters
+ * and the symbols commonly found on the crawled pages.
+ */
+final class HtmlEntities {
+
+	/**
+	 * the names of the code points 160 to 255, in order
+	 */
+	private static final String[] LATIN_1 = {
+		"nbsp", "iexcl", "cent", "pound", "curren", "yen", "brvbar", "sect",
+		"uml", "copy", "ordf", "laquo", "not", "shy", "reg", "macr",
+		"deg", "plusmn", "sup2", "sup3", "acute", "micro", "para", "middot",
+		"cedil", "sup1", "ordm", "raquo", "frac14", "frac12", "frac34", "iquest",
+		"Agrave", "Aacute", "Acirc", "Atilde", "Auml", "Aring", "AElig", "Ccedil",
+		"Egrave", "Eacute", "Ecirc", "Euml", "Igrave", "Iacute", "Icirc", "Iuml",
+		"ETH", "Ntilde", "Ograve", "Oacute", "Ocirc", "Otilde", "Ouml", "times",
+		"Oslash", "Ugrave", "Uacute", "Ucirc", "Uuml", "Yacute", "THORN", "szlig",
+		"agrave", "aacute", "acirc", "atilde", "auml", "aring", "aelig", "ccedil",
+		"egrave", "eacute", "ecirc", "euml", "igrave", "iacute", "icirc", "iuml",
+		"eth", "ntilde", "ograve", "oacute", "ocirc", "otilde", "ouml", "divide",
+		"oslash", "ugrave", "uacute", "ucirc", "uuml", "yacute", "thorn", "yuml"
+	};
+
+	private static final Object[][] SPECIAL = {
+		{"quot", 34}, {"amp", 38}, {"apos", 39}, {"lt", 60}, {"gt", 62},
+		{"OElig", 338}, {"oelig", 339}, {"Scaron", 352}, {"scaron", 353},
+		{"Yuml", 376}, {"fnof", 402}, {"circ", 710}, {"tilde", 732},
+		{"ensp", 8194}, {"emsp", 8195}, {"thinsp", 8201}, {"zwnj", 8204},
+		{"zwj", 8205}, {"lrm", 8206}, {"rlm", 8207}, {"ndash", 8211},
+		{"mdash", 8212}, {"lsquo", 8216}, {"rsquo", 8217}, {"sbquo", 8218},
+		{"ldquo", 8220}, {"rdquo", 8221}, {"bdquo", 8222}, {"dagger", 8224},
+		{"Dagger", 8225}, {"bull", 8226}, {"hellip", 8230}, {"permil", 8240},
+		{"prime", 8242}, {"Prime", 8243}, {"lsaquo", 8249}, {"rsaquo", 8250},
+		{"euro", 8364}, {"trade", 8482}, {"larr", 8592}, {"uarr", 8593},
+		{"rarr", 8594}, {"darr", 8595}, {"harr", 8596}, {"minus", 8722},
+		{"asymp", 8776}, {"ne", 8800}, {"le", 8804}, {"ge", 8805}
+	};
+
+	private static final Map<String, String> ENTITIES = new HashMap<>();
+
+	/**
+	 * the longest name, used to bound the lookahead
+	 */
+	static final int MAX_NAME_LENGTH;
+
+	static {
+		int max = 0;
+		for (int i = 0; i < LATIN_1.length; i++) {
+			ENTITIES.put(LATIN_1[i], String.valueOf((char) (160 + i)));
+			max = Math.max(max, LATIN_1[i].length());
+		}
+		for (Object[] special : SPECIAL) {
+			String name = (String) special[0];
+			ENTITIES.put(name, String.valueOf((char) ((Integer) special[1]).intValue()));
+			max = Math.max(max, name.length());
+		}
+		MAX_NAME_LENGTH = max;
+	}
+
+	private HtmlEntities() {
+	}
+
+	/**
+	 * @param name the name of the reference, without '&amp;' and ';'
+	 * @return the replacement or null if the name is unknown
+	 */
+	static String resolve(String name) {
+		return ENTITIES.get(name);
+	}
+
+}
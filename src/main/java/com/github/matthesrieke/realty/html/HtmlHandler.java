@@ -0,0 +1,38 @@
+/**
+ * Copyright (C) 2015 Matthes Rieke
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.matthesrieke.realty.html;
+
+import java.io.IOException;
+
+/**
+ * Receives the balanced element events of an {@link HtmlTokenizer}: every
+ * started element is ended, also if the markup misses the end tag.
+ */
+public interface HtmlHandler {
+
+	void startElement(HtmlElement element) throws IOException;
+
+	void endElement(HtmlElement element) throws IOException;
+
+	/**
+	 * @param text the decoded text. The instance is reused by the
+	 * tokenizer and only valid during the call
+	 */
+	void characters(CharSequence text) throws IOException;
+
+	void endDocument() throws IOException;
+
+}
@@ -0,0 +1,625 @@
+/**
+ * Copyright (C) 2015 Matthes Rieke
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.matthesrieke.realty.html;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A streaming and error-tolerant HTML tokenizer. The markup is read
+ * through a small buffer and reported to a {@link HtmlHandler} as balanced
+ * element events: void elements are ended right away, missing end tags
+ * are implied (e.g. an open &lt;tr&gt; is ended by the next &lt;tr&gt; or
+ * by &lt;/table&gt;) and stray end tags are ignored. Character references
+ * are decoded, a '&amp;' that does not start a known reference is kept as
+ * text. Comments, processing instructions and doctypes are skipped.
+ */
+public class HtmlTokenizer {
+
+	private static final int BUFFER_SIZE = 8 * 1024;
+
+	private static final Set<String> VOID_ELEMENTS = set("area", "base",
+			"basefont", "bgsound", "br", "col", "command", "embed", "frame", "hr",
+			"img", "input", "keygen", "link", "meta", "param", "source", "track",
+			"wbr");
+	private static final Set<String> RAW_TEXT_ELEMENTS = set("script", "style");
+
+	private static final Set<String> CLOSES_PARAGRAPH = set("address", "article",
+			"aside", "blockquote", "div", "dl", "fieldset", "footer", "form",
+			"h1", "h2", "h3", "h4", "h5", "h6", "header", "hr", "main", "nav",
+			"ol", "p", "pre", "section", "table", "ul");
+	private static final Set<String> TABLE_STRUCTURE = set("caption", "colgroup",
+			"tbody", "td", "tfoot", "th", "thead", "tr");
+
+	private static final Set<String> TABLE = set("table");
+	private static final Set<String> CELL_SCOPE = set("caption", "table", "td", "th");
+	private static final Set<String> ROW = set("tr");
+	private static final Set<String> ROW_SCOPE = set("table", "tbody", "tfoot", "thead");
+	private static final Set<String> CELLS = set("td", "th");
+	private static final Set<String> CELL_PARENT_SCOPE = set("table", "tr");
+	private static final Set<String> TABLE_SECTIONS = set("tbody", "tfoot", "thead");
+	private static final Set<String> LIST_ITEM = set("li");
+	private static final Set<String> LIST_SCOPE = set("ol", "table", "td", "th", "ul");
+	private static final Set<String> DEFINITIONS = set("dd", "dt");
+	private static final Set<String> DEFINITION_SCOPE = set("dl", "table", "td", "th");
+	private static final Set<String> OPTION = set("option");
+	private static final Set<String> OPTIONS = set("optgroup", "option");
+	private static final Set<String> OPTION_SCOPE = set("datalist", "select");
+	private static final Set<String> PARAGRAPH = set("p");
+	private static final Set<String> PARAGRAPH_SCOPE = set("button", "caption",
+			"object", "table", "td", "th");
+	private static final Set<String> ANCHOR = set("a");
+
+	private final Reader reader;
+	private final HtmlHandler handler;
+	private final char[] buffer = new char[BUFFER_SIZE];
+	private int position;
+	private int limit;
+	private boolean endOfInput;
+
+	private final StringBuilder text = new StringBuilder();
+	private final StringBuilder value = new StringBuilder();
+	private final List<HtmlElement> openElements = new ArrayList<>();
+	/*
+	 * the index of the innermost open element per name and, per open
+	 * element, the index of the next outer one of the same name. Looking
+	 * up an open element does not walk the stack, so unclosed or stray
+	 * tags cannot make the tokenizer quadratic.
+	 */
+	private final Map<String, Integer> innermost = new HashMap<>();
+	private int[] outerOfSameName = new int[64];
+
+	public HtmlTokenizer(Reader reader, HtmlHandler handler) {
+		this.reader = reader;
+		this.handler = handler;
+	}
+
+	/**
+	 * reads the markup until the end of the input. All elements still open
+	 * at the end are ended.
+	 */
+	public void parse() throws IOException {
+		int c;
+		while ((c = read()) != -1) {
+			if (c == '<') {
+				readMarkup();
+			}
+			else if (c == '&') {
+				readReference(text);
+			}
+			else {
+				text.append((char) c);
+			}
+		}
+		
+		flushText();
+		while (!openElements.isEmpty()) {
+			pop();
+		}
+		handler.endDocument();
+	}
+
+	private void readMarkup() throws IOException {
+		int c = peek(0);
+		if (c == '!') {
+			if (lookingAt("!--", 0)) {
+				skip(3);
+				skipPast("-->");
+			}
+			else if (lookingAt("![CDATA[", 0)) {
+				skip(8);
+				readPast("]]>", text);
+			}
+			else {
+				skipPast(">");
+			}
+		}
+		else if (c == '?') {
+			skipPast(">");
+		}
+		else if (c == '/') {
+			if (isLetter(peek(1))) {
+				skip(1);
+				String name = readName();
+				skipPast(">");
+				flushText();
+				endTag(name);
+			}
+			else {
+				skipPast(">");
+			}
+		}
+		else if (isLetter(c)) {
+			flushText();
+			readStartTag();
+		}
+		else {
+			text.append('<');
+		}
+	}
+
+	private void readStartTag() throws IOException {
+		String name = readName();
+		Map<String, String> attributes = null;
+		boolean selfClosing = false;
+		
+		while (true) {
+			skipWhitespace();
+			int c = peek(0);
+			if (c == -1) {
+				break;
+			}
+			if (c == '>') {
+				skip(1);
+				break;
+			}
+			if (c == '/') {
+				skip(1);
+				if (peek(0) == '>') {
+					skip(1);
+					selfClosing = true;
+					break;
+				}
+				continue;
+			}
+			
+			String attribute = readAttributeName();
+			skipWhitespace();
+			String attributeValue = "";
+			if (peek(0) == '=') {
+				skip(1);
+				skipWhitespace();
+				attributeValue = readAttributeValue();
+			}
+			
+			if (attributes == null) {
+				attributes = new LinkedHashMap<>();
+			}
+			if (!attributes.containsKey(attribute)) {
+				attributes.put(attribute, attributeValue);
+			}
+		}
+		
+		startTag(name, attributes, selfClosing);
+		
+		if (!selfClosing && RAW_TEXT_ELEMENTS.contains(name)) {
+			readRawText(name);
+			flushText();
+			endTag(name);
+		}
+	}
+
+	/**
+	 * reads the content of script and style elements up to their end tag
+	 */
+	private void readRawText(String name) throws IOException {
+		int c;
+		while ((c = read()) != -1) {
+			if (c == '<' && peek(0) == '/' && lookingAtIgnoreCase(name, 1)
+					&& !isNameChar(peek(1 + name.length()))) {
+				skip(1 + name.length());
+				skipPast(">");
+				return;
+			}
+			text.append((char) c);
+		}
+	}
+
+	private String readName() throws IOException {
+		value.setLength(0);
+		int c = peek(0);
+		while (c != -1 && !isWhitespace(c) && c != '/' && c != '>') {
+			value.append((char) c);
+			skip(1);
+			c = peek(0);
+		}
+		return value.toString().toLowerCase(Locale.ENGLISH);
+	}
+
+	private String readAttributeName() throws IOException {
+		value.setLength(0);
+		int c = peek(0);
+		do {
+			value.append((char) c);
+			skip(1);
+			c = peek(0);
+		} while (c != -1 && !isWhitespace(c) && c != '/' && c != '>' && c != '=');
+		return value.toString().toLowerCase(Locale.ENGLISH);
+	}
+
+	private String readAttributeValue() throws IOException {
+		value.setLength(0);
+		int c = peek(0);
+		if (c == '"' || c == '\'') {
+			int quote = c;
+			skip(1);
+			while ((c = read()) != -1 && c != quote) {
+				if (c == '&') {
+					readReference(value);
+				}
+				else {
+					value.append((char) c);
+				}
+			}
+		}
+		else {
+			while (c != -1 && !isWhitespace(c) && c != '>') {
+				skip(1);
+				if (c == '&') {
+					readReference(value);
+				}
+				else {
+					value.append((char) c);
+				}
+				c = peek(0);
+			}
+		}
+		return value.toString();
+	}
+
+	/**
+	 * decodes the character reference following a '&amp;'. If there is
+	 * no valid reference the '&amp;' is appended as is.
+	 */
+	private void readReference(StringBuilder target) throws IOException {
+		if (peek(0) == '#') {
+			int index = 1;
+			int radix = 10;
+			if (peek(1) == 'x' || peek(1) == 'X') {
+				radix = 16;
+				index = 2;
+			}
+			int start = index;
+			int codePoint = 0;
+			int digit;
+			while (index - start < 8 && (digit = Character.digit(peek(index), radix)) != -1) {
+				codePoint = codePoint * radix + digit;
+				index++;
+			}
+			if (index > start) {
+				if (peek(index) == ';') {
+					index++;
+				}
+				skip(index);
+				if (Character.isValidCodePoint(codePoint) && codePoint != 0
+						&& (codePoint < Character.MIN_SURROGATE || codePoint > Character.MAX_SURROGATE)) {
+					target.appendCodePoint(codePoint);
+				}
+				else {
+					target.append('\uFFFD');
+				}
+				return;
+			}
+		}
+		else {
+			int length = 0;
+			while (length < HtmlEntities.MAX_NAME_LENGTH && isLetterOrDigit(peek(length))) {
+				length++;
+			}
+			if (length > 0 && peek(length) == ';') {
+				String replacement = HtmlEntities.resolve(new String(buffer, position, length));
+				if (replacement != null) {
+					skip(length + 1);
+					target.append(replacement);
+					return;
+				}
+			}
+		}
+		target.append('&');
+	}
+
+	private void startTag(String name, Map<String, String> attributes,
+			boolean selfClosing) throws IOException {
+		closeImplied(name);
+		
+		HtmlElement parent = openElements.isEmpty() ? null
+				: openElements.get(openElements.size() - 1);
+		HtmlElement element = new HtmlElement(name, attributes, parent);
+		handler.startElement(element);
+		
+		if (selfClosing || VOID_ELEMENTS.contains(name)) {
+			handler.endElement(element);
+		}
+		else {
+			push(element);
+		}
+	}
+
+	/**
+	 * ends the elements that cannot contain the starting element
+	 */
+	private void closeImplied(String name) throws IOException {
+		if (CLOSES_PARAGRAPH.contains(name)) {
+			closeOpen(PARAGRAPH, PARAGRAPH_SCOPE);
+		}
+		
+		switch (name) {
+		case "tr":
+			closeOpen(ROW, ROW_SCOPE);
+			break;
+		case "td":
+		case "th":
+			closeOpen(CELLS, CELL_PARENT_SCOPE);
+			break;
+		case "tbody":
+		case "thead":
+		case "tfoot":
+			closeOpen(TABLE_SECTIONS, TABLE);
+			break;
+		case "li":
+			closeOpen(LIST_ITEM, LIST_SCOPE);
+			break;
+		case "dd":
+		case "dt":
+			closeOpen(DEFINITIONS, DEFINITION_SCOPE);
+			break;
+		case "option":
+			closeOpen(OPTION, OPTION_SCOPE);
+			break;
+		case "optgroup":
+			closeOpen(OPTIONS, OPTION_SCOPE);
+			break;
+		case "a":
+			closeOpen(ANCHOR, CELL_SCOPE);
+			break;
+		default:
+			break;
+		}
+	}
+
+	private void endTag(String name) throws IOException {
+		if (name.equals("br")) {
+			/*
+			 * browsers read </br> as <br>
+			 */
+			startTag(name, null, true);
+			return;
+		}
+		if (VOID_ELEMENTS.contains(name)) {
+			return;
+		}
+		
+		Set<String> scope;
+		if (name.equals("table")) {
+			scope = Collections.emptySet();
+		}
+		else if (TABLE_STRUCTURE.contains(name)) {
+			scope = TABLE;
+		}
+		else {
+			scope = CELL_SCOPE;
+		}
+		
+		Integer index = innermost.get(name);
+		if (index != null && findInnermost(scope) < index) {
+			popTo(index);
+		}
+	}
+
+	private void closeOpen(Set<String> names, Set<String> scope) throws IOException {
+		int index = findOpen(names, scope);
+		if (index != -1) {
+			popTo(index);
+		}
+	}
+
+	/**
+	 * @return the index of the innermost open element with one of the
+	 * names, or -1 if an element of the scope is found first
+	 */
+	private int findOpen(Set<String> names, Set<String> scope) {
+		int index = findInnermost(names);
+		if (index == -1 || findInnermost(scope) > index) {
+			return -1;
+		}
+		return index;
+	}
+
+	/**
+	 * @return the index of the innermost open element with one of the
+	 * names, or -1
+	 */
+	private int findInnermost(Set<String> names) {
+		int result = -1;
+		for (String name : names) {
+			Integer index = innermost.get(name);
+			if (index != null && index > result) {
+				result = index;
+			}
+		}
+		return result;
+	}
+
+	private void push(HtmlElement element) {
+		int index = openElements.size();
+		if (index == outerOfSameName.length) {
+			outerOfSameName = Arrays.copyOf(outerOfSameName, index * 2);
+		}
+		Integer outer = innermost.put(element.getName(), index);
+		outerOfSameName[index] = outer == null ? -1 : outer;
+		openElements.add(element);
+	}
+
+	private void popTo(int index) throws IOException {
+		while (openElements.size() > index) {
+			pop();
+		}
+	}
+
+	private void pop() throws IOException {
+		int index = openElements.size() - 1;
+		HtmlElement element = openElements.remove(index);
+		if (outerOfSameName[index] == -1) {
+			innermost.remove(element.getName());
+		}
+		else {
+			innermost.put(element.getName(), outerOfSameName[index]);
+		}
+		handler.endElement(element);
+	}
+
+	private void flushText() throws IOException {
+		if (text.length() > 0) {
+			handler.characters(text);
+			text.setLength(0);
+		}
+	}
+
+	private void skipWhitespace() throws IOException {
+		while (isWhitespace(peek(0))) {
+			skip(1);
+		}
+	}
+
+	private void skipPast(String terminator) throws IOException {
+		int matched = 0;
+		int c;
+		while (matched < terminator.length() && (c = read()) != -1) {
+			matched = advanceMatch(terminator, matched, c);
+		}
+	}
+
+	/**
+	 * appends everything up to the terminator to the target
+	 */
+	private void readPast(String terminator, StringBuilder target) throws IOException {
+		int matched = 0;
+		int c;
+		while (matched < terminator.length() && (c = read()) != -1) {
+			target.append((char) c);
+			matched = advanceMatch(terminator, matched, c);
+		}
+		if (matched == terminator.length()) {
+			target.setLength(target.length() - terminator.length());
+		}
+	}
+
+	/**
+	 * @return the length of the longest prefix of the terminator that the
+	 * consumed input ends with, given that the previous input ended with
+	 * the first <code>matched</code> characters
+	 */
+	private static int advanceMatch(String terminator, int matched, int c) {
+		if (terminator.charAt(matched) == c) {
+			return matched + 1;
+		}
+		/*
+		 * the terminators are short, find the longest suffix of the
+		 * matched prefix plus c that is again a prefix, comparing in place
+		 */
+		for (int length = matched; length > 0; length--) {
+			if (terminator.charAt(length - 1) == c
+					&& terminator.regionMatches(matched - length + 1, terminator, 0, length - 1)) {
+				return length;
+			}
+		}
+		return 0;
+	}
+
+	private boolean lookingAt(String s, int offset) throws IOException {
+		for (int i = 0; i < s.length(); i++) {
+			if (peek(offset + i) != s.charAt(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private boolean lookingAtIgnoreCase(String s, int offset) throws IOException {
+		for (int i = 0; i < s.length(); i++) {
+			int c = peek(offset + i);
+			if (c == -1 || Character.toLowerCase((char) c) != s.charAt(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private int read() throws IOException {
+		if (position >= limit && !fill(1)) {
+			return -1;
+		}
+		return buffer[position++];
+	}
+
+	/**
+	 * @return the character at the offset from the current position
+	 * or -1 if the input ends before
+	 */
+	private int peek(int offset) throws IOException {
+		if (position + offset >= limit && !fill(offset + 1)) {
+			return -1;
+		}
+		return buffer[position + offset];
+	}
+
+	private void skip(int count) {
+		position += count;
+	}
+
+	/**
+	 * @return true if at least the required number of characters
+	 * is available from the current position
+	 */
+	private boolean fill(int required) throws IOException {
+		if (position > 0) {
+			System.arraycopy(buffer, position, buffer, 0, limit - position);
+			limit -= position;
+			position = 0;
+		}
+		while (limit < required && !endOfInput) {
+			int count = reader.read(buffer, limit, buffer.length - limit);
+			if (count == -1) {
+				endOfInput = true;
+			}
+			else {
+				limit += count;
+			}
+		}
+		return limit >= required;
+	}
+
+	private static boolean isWhitespace(int c) {
+		return c == ' ' || c == '\n' || c == '\t' || c == '\r' || c == '\f';
+	}
+
+	private static boolean isLetter(int c) {
+		return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+	}
+
+	private static boolean isLetterOrDigit(int c) {
+		return isLetter(c) || (c >= '0' && c <= '9');
+	}
+
+	private static boolean isNameChar(int c) {
+		return isLetterOrDigit(c) || c == '-' || c == '_' || c == ':';
+	}
+
+	private static Set<String> set(String... names) {
+		return new HashSet<>(Arrays.asList(names));
+	}
+
+}
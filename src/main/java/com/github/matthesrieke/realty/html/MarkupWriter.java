@@ -0,0 +1,152 @@
+/**
+ * Copyright (C) 2015 Matthes Rieke
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.matthesrieke.realty.html;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Writes the events of a {@link HtmlTokenizer} as well-formed markup.
+ * Every element is ended, void elements such as &lt;br&gt; and &lt;img&gt;
+ * are written as empty elements, text and attribute values are escaped
+ * and names are made valid XML names. Together with the tokenizer this
+ * normalizes a page in one pass, the closure of a tag is decided by the
+ * tokenizer from the tag itself.
+ */
+public class MarkupWriter implements HtmlHandler {
+
+	/**
+	 * the markup is written without namespaces, an XHTML namespace would
+	 * change the names of all elements
+	 */
+	private static final String NAMESPACE_DECLARATION = "xmlns";
+
+	private final Appendable target;
+	private final Map<String, String> names = new HashMap<>();
+	private HtmlElement unfinished;
+
+	/**
+	 * @param target receives the markup
+	 */
+	public MarkupWriter(Appendable target) {
+		this.target = target;
+	}
+
+	/**
+	 * Normalizes the markup in a single pass.
+	 */
+	public static void normalize(Reader markup, Appendable target) throws IOException {
+		new HtmlTokenizer(markup, new MarkupWriter(target)).parse();
+	}
+
+	@Override
+	public void startElement(HtmlElement element) throws IOException {
+		finishStartTag();
+		target.append('<').append(resolveName(element.getName()));
+		for (Map.Entry<String, String> attribute : element.getAttributes().entrySet()) {
+			if (XmlNames.isValid(attribute.getKey()) && !attribute.getKey().equals(NAMESPACE_DECLARATION)) {
+				target.append(' ').append(attribute.getKey()).append("=\"");
+				escape(attribute.getValue(), true);
+				target.append('"');
+			}
+		}
+		unfinished = element;
+	}
+
+	@Override
+	public void endElement(HtmlElement element) throws IOException {
+		if (unfinished == element) {
+			target.append("/>");
+			unfinished = null;
+		}
+		else {
+			finishStartTag();
+			target.append("</").append(resolveName(element.getName())).append('>');
+		}
+	}
+
+	@Override
+	public void characters(CharSequence text) throws IOException {
+		finishStartTag();
+		escape(text, false);
+	}
+
+	@Override
+	public void endDocument() throws IOException {
+		finishStartTag();
+	}
+
+	/**
+	 * the start tag is left open until it is known whether the element is
+	 * empty
+	 */
+	private void finishStartTag() throws IOException {
+		if (unfinished != null) {
+			target.append('>');
+			unfinished = null;
+		}
+	}
+
+	private String resolveName(String name) {
+		String result = names.get(name);
+		if (result == null) {
+			result = XmlNames.isValid(name) ? name : XmlNames.sanitize(name);
+			names.put(name, result);
+		}
+		return result;
+	}
+
+	/**
+	 * escapes markup characters and drops characters which are not
+	 * allowed in XML
+	 */
+	private void escape(CharSequence text, boolean attribute) throws IOException {
+		int start = 0;
+		for (int i = 0; i < text.length(); i++) {
+			char c = text.charAt(i);
+			String replacement;
+			switch (c) {
+			case '&':
+				replacement = "&amp;";
+				break;
+			case '<':
+				replacement = "&lt;";
+				break;
+			case '>':
+				replacement = "&gt;";
+				break;
+			case '"':
+				replacement = attribute ? "&quot;" : null;
+				break;
+			default:
+				replacement = isAllowed(c) ? null : "";
+				break;
+			}
+			if (replacement != null) {
+				target.append(text, start, i).append(replacement);
+				start = i + 1;
+			}
+		}
+		target.append(text, start, text.length());
+	}
+
+	private static boolean isAllowed(char c) {
+		return c >= 0x20 ? c < 0xFFFE : c == '\t' || c == '\n' || c == '\r';
+	}
+
+}
@@ -0,0 +1,295 @@
+/**
+ * Copyright (C) 2015 Matthes Rieke
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.matthesrieke.realty.html;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * A subset of CSS selectors which can be matched against the open
+ * elements of a {@link HtmlTokenizer} without building a tree:
+ * type selectors and '*', classes (".a.b"), attributes ("[id]",
+ * "[id=value]"), negations (":not(.a)") and the descendant and child
+ * (">") combinators. A leading '>' restricts the first step to the
+ * children of the element the selector is evaluated for.
+ */
+public class Selector {
+
+	private final List<Step> steps;
+	private final String expression;
+
+	private Selector(List<Step> steps, String expression) {
+		this.steps = steps;
+		this.expression = expression;
+	}
+
+	/**
+	 * @param expression one or more comma separated selectors
+	 * @throws IllegalArgumentException if the expression is not supported
+	 */
+	public static List<Selector> parseList(String expression) {
+		List<Selector> result = new ArrayList<>();
+		for (String part : expression.split(",")) {
+			result.add(parse(part));
+		}
+		return result;
+	}
+
+	/**
+	 * @throws IllegalArgumentException if the expression is not supported
+	 */
+	public static Selector parse(String expression) {
+		return new Parser(expression.trim()).parse();
+	}
+
+	/**
+	 * @return the number of compound selectors
+	 */
+	public int length() {
+		return steps.size();
+	}
+
+	/**
+	 * @return true if the step only matches children of the element which
+	 * matched the previous step, false if it matches any descendant
+	 */
+	public boolean isChildStep(int step) {
+		return steps.get(step).child;
+	}
+
+	public boolean matches(int step, HtmlElement element) {
+		return steps.get(step).matches(element);
+	}
+
+	@Override
+	public String toString() {
+		return expression;
+	}
+
+	private static class Step {
+
+		private final String name;
+		private final boolean child;
+		private final List<Condition> conditions;
+
+		Step(String name, boolean child, List<Condition> conditions) {
+			this.name = name;
+			this.child = child;
+			this.conditions = conditions;
+		}
+
+		boolean matches(HtmlElement element) {
+			if (name != null && !name.equals(element.getName())) {
+				return false;
+			}
+			for (Condition condition : conditions) {
+				if (!condition.matches(element)) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+	}
+
+	private static class Condition {
+
+		private final String attribute;
+		private final String value;
+		private final boolean classToken;
+		private final boolean negated;
+
+		Condition(String attribute, String value, boolean classToken,
+				boolean negated) {
+			this.attribute = attribute;
+			this.value = value;
+			this.classToken = classToken;
+			this.negated = negated;
+		}
+
+		boolean matches(HtmlElement element) {
+			String actual = element.getAttribute(attribute);
+			boolean result;
+			if (actual == null) {
+				result = false;
+			}
+			else if (classToken) {
+				result = containsToken(actual, value);
+			}
+			else {
+				result = value == null || value.equals(actual);
+			}
+			return result != negated;
+		}
+
+		/**
+		 * @return true if the whitespace separated list contains the token
+		 */
+		private static boolean containsToken(String list, String token) {
+			int index = list.indexOf(token);
+			while (index >= 0) {
+				int end = index + token.length();
+				if ((index == 0 || Character.isWhitespace(list.charAt(index - 1)))
+						&& (end == list.length() || Character.isWhitespace(list.charAt(end)))) {
+					return true;
+				}
+				index = list.indexOf(token, end);
+			}
+			return false;
+		}
+
+	}
+
+	private static class Parser {
+
+		private final String expression;
+		private int position;
+
+		Parser(String expression) {
+			this.expression = expression;
+		}
+
+		Selector parse() {
+			List<Step> steps = new ArrayList<>();
+			skipWhitespace();
+			boolean child = consume('>');
+			while (true) {
+				skipWhitespace();
+				steps.add(parseStep(child));
+				boolean whitespace = skipWhitespace();
+				if (position == expression.length()) {
+					break;
+				}
+				child = consume('>');
+				if (!child && !whitespace) {
+					throw error("Unexpected character");
+				}
+			}
+			return new Selector(Collections.unmodifiableList(steps), expression);
+		}
+
+		private Step parseStep(boolean child) {
+			String name = null;
+			boolean universal = consume('*');
+			if (!universal && position < expression.length() && isNameChar(expression.charAt(position))) {
+				name = parseName(true);
+			}
+			
+			List<Condition> conditions = new ArrayList<>();
+			Condition condition;
+			while ((condition = parseCondition(false)) != null) {
+				conditions.add(condition);
+			}
+			
+			if (name == null && !universal && conditions.isEmpty()) {
+				throw error("Empty selector");
+			}
+			return new Step(name, child, conditions);
+		}
+
+		private Condition parseCondition(boolean negated) {
+			if (consume('.')) {
+				return new Condition("class", parseName(false), true, negated);
+			}
+			if (consume('[')) {
+				String attribute = parseName(true);
+				String value = null;
+				if (consume('=')) {
+					value = parseValue();
+				}
+				expect(']');
+				return new Condition(attribute, value, false, negated);
+			}
+			if (!negated && expression.startsWith(":not(", position)) {
+				position += ":not(".length();
+				Condition result = parseCondition(true);
+				if (result == null) {
+					throw error("Unsupported negation");
+				}
+				expect(')');
+				return result;
+			}
+			return null;
+		}
+
+		private String parseValue() {
+			if (position < expression.length()) {
+				char quote = expression.charAt(position);
+				if (quote == '"' || quote == '\'') {
+					int end = expression.indexOf(quote, position + 1);
+					if (end < 0) {
+						throw error("Unterminated value");
+					}
+					String result = expression.substring(position + 1, end);
+					position = end + 1;
+					return result;
+				}
+			}
+			return parseName(false);
+		}
+
+		/**
+		 * @param lowerCase true for element and attribute names, which are
+		 * reported in lower case by the tokenizer
+		 */
+		private String parseName(boolean lowerCase) {
+			int start = position;
+			while (position < expression.length() && isNameChar(expression.charAt(position))) {
+				position++;
+			}
+			if (start == position) {
+				throw error("Name expected");
+			}
+			String result = expression.substring(start, position);
+			return lowerCase ? result.toLowerCase(Locale.ENGLISH) : result;
+		}
+
+		private boolean skipWhitespace() {
+			int start = position;
+			while (position < expression.length() && Character.isWhitespace(expression.charAt(position))) {
+				position++;
+			}
+			return position > start;
+		}
+
+		private boolean consume(char c) {
+			if (position < expression.length() && expression.charAt(position) == c) {
+				position++;
+				return true;
+			}
+			return false;
+		}
+
+		private void expect(char c) {
+			if (!consume(c)) {
+				throw error("'" + c + "' expected");
+			}
+		}
+
+		private IllegalArgumentException error(String message) {
+			return new IllegalArgumentException(String.format("%s at position %s of selector '%s'",
+					message, position, expression));
+		}
+
+		private static boolean isNameChar(char c) {
+			return Character.isLetterOrDigit(c) || c == '-' || c == '_';
+		}
+
+	}
+
+}
@@ -0,0 +1,65 @@
+/**
+ * Copyright (C) 2015 Matthes Rieke
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.matthesrieke.realty.html;
+
+/**
+ * Maps the names of HTML elements and attributes, which are far less
+ * restricted, to XML names without a prefix.
+ */
+final class XmlNames {
+
+	private XmlNames() {
+	}
+
+	/**
+	 * @return true if the name is a valid XML name without a prefix
+	 */
+	static boolean isValid(String name) {
+		if (name.isEmpty() || !isNameStart(name.charAt(0))) {
+			return false;
+		}
+		for (int i = 1; i < name.length(); i++) {
+			if (!isNameChar(name.charAt(i))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @return the name with invalid characters replaced by '_'
+	 */
+	static String sanitize(String name) {
+		StringBuilder sb = new StringBuilder(name.length() + 1);
+		if (name.isEmpty() || !isNameStart(name.charAt(0))) {
+			sb.append('_');
+		}
+		for (int i = 0; i < name.length(); i++) {
+			char c = name.charAt(i);
+			sb.append(isNameChar(c) ? c : '_');
+		}
+		return sb.toString();
+	}
+
+	private static boolean isNameStart(char c) {
+		return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || c == '_';
+	}
+
+	private static boolean isNameChar(char c) {
+		return isNameStart(c) || (c >= '0' && c <= '9') || c == '-' || c == '.';
+	}
+
+}
@@ -0,0 +1,110 @@
+/**
+ * Copyright (C) 2015 Matthes Rieke
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.matthesrieke.realty.http;
+
+/**
+ * A circuit breaker for a single provider. After a number of consecutive
+ * failures the circuit opens and no requests are permitted. Once the open
+ * period has passed, a single probe request is permitted: its success
+ * closes the circuit, its failure opens it again.
+ */
+public class CircuitBreaker {
+
+	public enum State {
+		CLOSED, OPEN, HALF_OPEN
+	}
+
+	private final String name;
+	private final int failureThreshold;
+	private final long openMillis;
+	private State state = State.CLOSED;
+	private int consecutiveFailures;
+	private long openedAt;
+	private boolean probing;
+
+	public CircuitBreaker(String name, int failureThreshold, long openMillis) {
+		this.name = name;
+		this.failureThreshold = Math.max(1, failureThreshold);
+		this.openMillis = openMillis;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * @return true if a request to the provider is permitted
+	 */
+	public synchronized boolean allowRequest() {
+		switch (state) {
+		case CLOSED:
+			return true;
+		case OPEN:
+			if (currentTimeMillis() - openedAt >= openMillis) {
+				state = State.HALF_OPEN;
+				probing = true;
+				return true;
+			}
+			return false;
+		default:
+			if (!probing) {
+				probing = true;
+				return true;
+			}
+			return false;
+		}
+	}
+
+	/**
+	 * @return the state before the success
+	 */
+	public synchronized State recordSuccess() {
+		State previous = state;
+		state = State.CLOSED;
+		consecutiveFailures = 0;
+		probing = false;
+		return previous;
+	}
+
+	/**
+	 * @return the state after the failure
+	 */
+	public synchronized State recordFailure() {
+		consecutiveFailures++;
+		probing = false;
+		if (state == State.HALF_OPEN || consecutiveFailures >= failureThreshold) {
+			state = State.OPEN;
+			openedAt = currentTimeMillis();
+		}
+		return state;
+	}
+
+	public synchronized State getState() {
+		return state;
+	}
+
+	public synchronized int getConsecutiveFailures() {
+		return consecutiveFailures;
+	}
+
+	/**
+	 * the clock of the open period
+	 */
+	long currentTimeMillis() {
+		return System.currentTimeMillis();
+	}
+
+}
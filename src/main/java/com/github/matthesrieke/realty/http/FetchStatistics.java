@@ -0,0 +1,98 @@
+/**
+ * Copyright (C) 2015 Matthes Rieke
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.matthesrieke.realty.http;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Snapshot of the connection usage of a {@link PageFetcher}.
+ */
+public class FetchStatistics {
+
+	private final long requests;
+	private final long connectionsOpened;
+	private final long notModified;
+	private final int idleConnections;
+	private final Map<String, TransferVolume> transfers;
+
+	public FetchStatistics(long requests, long connectionsOpened,
+			long notModified, int idleConnections, Map<String, TransferVolume> transfers) {
+		this.requests = requests;
+		this.connectionsOpened = connectionsOpened;
+		this.notModified = notModified;
+		this.idleConnections = idleConnections;
+		this.transfers = Collections.unmodifiableMap(transfers);
+	}
+
+	public long getRequests() {
+		return requests;
+	}
+
+	public long getConnectionsOpened() {
+		return connectionsOpened;
+	}
+
+	public long getReusedConnections() {
+		return Math.max(0, requests - connectionsOpened);
+	}
+
+	public long getNotModified() {
+		return notModified;
+	}
+
+	public int getIdleConnections() {
+		return idleConnections;
+	}
+
+	/**
+	 * @return the transfer volume per provider host
+	 */
+	public Map<String, TransferVolume> getTransfers() {
+		return transfers;
+	}
+
+	public TransferVolume getTotalTransfer() {
+		TransferVolume result = new TransferVolume(0, 0);
+		for (TransferVolume tv : transfers.values()) {
+			result = result.plus(tv.getWireBytes(), tv.getContentBytes());
+		}
+		return result;
+	}
+
+	/**
+	 * @param earlier a snapshot taken before this one
+	 * @return the requests and connections in between both snapshots
+	 */
+	public FetchStatistics since(FetchStatistics earlier) {
+		Map<String, TransferVolume> transferDelta = new HashMap<>();
+		for (Map.Entry<String, TransferVolume> e : transfers.entrySet()) {
+			transferDelta.put(e.getKey(), e.getValue().since(earlier.transfers.get(e.getKey())));
+		}
+		return new FetchStatistics(requests - earlier.requests,
+				connectionsOpened - earlier.connectionsOpened,
+				notModified - earlier.notModified, idleConnections, transferDelta);
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%s requests (%s not modified), %s connections opened, %s reused, %s idle; %s",
+				requests, notModified, connectionsOpened, getReusedConnections(), idleConnections,
+				getTotalTransfer());
+	}
+
+}
@@ -0,0 +1,183 @@
+/**
+ * Copyright (C) 2015 Matthes Rieke
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.matthesrieke.realty.http;
+
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.matthesrieke.realty.Util;
+
+/**
+ * A token bucket rate limiter keyed by host. Rates and bursts are
+ * configured via <code>rateLimit.permitsPerSecond</code> and
+ * <code>rateLimit.burst</code>, both can be overridden per host, e.g.
+ * <code>rateLimit.www.wn-immo.de.permitsPerSecond</code>. A host that
+ * signals overload is blocked for the time it requested (Retry-After)
+ * or for an exponentially growing backoff.
+ */
+public class HostRateLimiter {
+
+	private static final Logger logger = LoggerFactory
+			.getLogger(HostRateLimiter.class);
+
+	private static final String PREFIX = "rateLimit.";
+	private static final long MIN_BACKOFF_MILLIS = 1000;
+
+	private final Properties properties;
+	private final double defaultPermitsPerSecond;
+	private final int defaultBurst;
+	private final long maxBackoffMillis;
+	private final ConcurrentMap<String, TokenBucket> buckets = new ConcurrentHashMap<>();
+
+	public HostRateLimiter(Properties properties) {
+		this.properties = properties;
+		this.defaultPermitsPerSecond = Util.getDoubleProperty(properties,
+				PREFIX + "permitsPerSecond", 1.0);
+		this.defaultBurst = Util.getIntegerProperty(properties, PREFIX + "burst", 1);
+		this.maxBackoffMillis = Util.getIntegerProperty(properties,
+				PREFIX + "maxBackoffSeconds", 300) * 1000L;
+	}
+
+	/**
+	 * Blocks until a request to the given host is permitted.
+	 * 
+	 * @param host the target host
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	public void acquire(String host) throws InterruptedException {
+		long waitNanos;
+		while ((waitNanos = tryAcquire(host)) > 0) {
+			TimeUnit.NANOSECONDS.sleep(waitNanos);
+		}
+	}
+
+	/**
+	 * @return 0 if a request to the host is permitted, otherwise the
+	 * time to wait in nanos
+	 */
+	long tryAcquire(String host) {
+		return resolveBucket(host).tryAcquire();
+	}
+
+	/**
+	 * the clock of the buckets
+	 */
+	long nanoTime() {
+		return System.nanoTime();
+	}
+
+	/**
+	 * Blocks all further requests to the host for the given time. If the
+	 * host did not state a time, the current backoff of the host is doubled.
+	 * 
+	 * @param host the overloaded host
+	 * @param retryAfterMillis the time requested by the host, or a negative
+	 * value if unknown
+	 * @return the time requests to the host are blocked
+	 */
+	public long backOff(String host, long retryAfterMillis) {
+		long delay = resolveBucket(host).backOff(retryAfterMillis);
+		logger.info(String.format("Backing off from %s for %s ms", host, delay));
+		return delay;
+	}
+
+	/**
+	 * resets the backoff of the host after a successful request
+	 */
+	public void onSuccess(String host) {
+		resolveBucket(host).resetBackoff();
+	}
+
+	private TokenBucket resolveBucket(String host) {
+		TokenBucket bucket = buckets.get(host);
+		if (bucket == null) {
+			double rate = Util.getDoubleProperty(properties,
+					PREFIX + host + ".permitsPerSecond", defaultPermitsPerSecond);
+			int burst = Util.getIntegerProperty(properties,
+					PREFIX + host + ".burst", defaultBurst);
+			TokenBucket created = new TokenBucket(rate, burst);
+			bucket = buckets.putIfAbsent(host, created);
+			if (bucket == null) {
+				bucket = created;
+			}
+		}
+		return bucket;
+	}
+
+	private class TokenBucket {
+
+		private final double permitsPerNano;
+		private final double capacity;
+		private double tokens;
+		private long lastRefill;
+		private long blockedUntil;
+		private long backoffMillis;
+
+		TokenBucket(double permitsPerSecond, int burst) {
+			this.permitsPerNano = Math.max(permitsPerSecond, 0.0001) / TimeUnit.SECONDS.toNanos(1);
+			this.capacity = Math.max(1, burst);
+			this.tokens = 1;
+			this.lastRefill = nanoTime();
+			this.blockedUntil = this.lastRefill;
+		}
+
+		/**
+		 * @return 0 if a token was taken, otherwise the time to wait in nanos
+		 */
+		synchronized long tryAcquire() {
+			long now = nanoTime();
+			tokens = Math.min(capacity, tokens + (now - lastRefill) * permitsPerNano);
+			lastRefill = now;
+
+			if (blockedUntil - now > 0) {
+				return blockedUntil - now;
+			}
+			if (tokens >= 1) {
+				tokens -= 1;
+				return 0;
+			}
+			return Math.max(1, (long) Math.ceil((1 - tokens) / permitsPerNano));
+		}
+
+		synchronized long backOff(long retryAfterMillis) {
+			long delay;
+			if (retryAfterMillis >= 0) {
+				delay = Math.min(retryAfterMillis, maxBackoffMillis);
+			}
+			else {
+				delay = Math.min(maxBackoffMillis, Math.max(MIN_BACKOFF_MILLIS, backoffMillis * 2));
+			}
+			backoffMillis = Math.max(delay, MIN_BACKOFF_MILLIS);
+			long until = nanoTime() + TimeUnit.MILLISECONDS.toNanos(delay);
+			if (until - blockedUntil > 0) {
+				blockedUntil = until;
+			}
+			tokens = 0;
+			return delay;
+		}
+
+		synchronized void resetBackoff() {
+			backoffMillis = 0;
+		}
+
+	}
+
+}
@@ -0,0 +1,78 @@
+/**
+ * Copyright (C) 2015 Matthes Rieke
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.matthesrieke.realty.http;
+
+import org.apache.http.HttpStatus;
+
+public class Page {
+
+	private final String url;
+	private final int statusCode;
+	private final StringBuilder content;
+	private final String etag;
+	private final String lastModified;
+	private final long retryAfterMillis;
+
+	public Page(String url, int statusCode, StringBuilder content) {
+		this(url, statusCode, content, null, null, -1);
+	}
+
+	public Page(String url, int statusCode, StringBuilder content,
+			String etag, String lastModified, long retryAfterMillis) {
+		this.url = url;
+		this.statusCode = statusCode;
+		this.content = content;
+		this.etag = etag;
+		this.lastModified = lastModified;
+		this.retryAfterMillis = retryAfterMillis;
+	}
+
+	public String getUrl() {
+		return url;
+	}
+
+	public int getStatusCode() {
+		return statusCode;
+	}
+
+	public StringBuilder getContent() {
+		return content;
+	}
+
+	public String getEtag() {
+		return etag;
+	}
+
+	public String getLastModified() {
+		return lastModified;
+	}
+
+	/**
+	 * @return the delay requested via Retry-After, or -1 if not provided
+	 */
+	public long getRetryAfterMillis() {
+		return retryAfterMillis;
+	}
+
+	public boolean isNotModified() {
+		return statusCode == HttpStatus.SC_NOT_MODIFIED;
+	}
+
+	public boolean isSuccessful() {
+		return statusCode < HttpStatus.SC_MULTIPLE_CHOICES && content != null;
+	}
+
+}
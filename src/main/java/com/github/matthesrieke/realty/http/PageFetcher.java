@@ -0,0 +1,428 @@
+/**
+ * Copyright (C) 2015 Matthes Rieke
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.matthesrieke.realty.http;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.net.URI;
+import java.nio.charset.Charset;
+import java.nio.charset.UnsupportedCharsetException;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.ParseException;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.utils.DateUtils;
+import org.apache.http.config.ConnectionConfig;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.conn.HttpConnectionFactory;
+import org.apache.http.conn.ManagedHttpClientConnection;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.entity.ContentType;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.conn.ManagedHttpClientConnectionFactory;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.util.EntityUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.matthesrieke.realty.Util;
+import com.github.matthesrieke.realty.storage.PageValidator;
+
+/**
+ * Long-lived HTTP fetcher shared by all crawl workers. Connections are
+ * pooled and kept alive between requests, idle connections are evicted
+ * in the background.
+ */
+public class PageFetcher {
+
+	private static final Logger logger = LoggerFactory
+			.getLogger(PageFetcher.class);
+
+	private static final int HTTP_TOO_MANY_REQUESTS = 429;
+	private static final String ACCEPTED_ENCODINGS = "gzip, deflate";
+
+	private final PoolingHttpClientConnectionManager connectionManager;
+	private final HostRateLimiter rateLimiter;
+	private final int maxThrottleRetries;
+	private final RetryPolicy retryPolicy;
+	private final CloseableHttpClient client;
+	private final ScheduledExecutorService evictor;
+	private final AtomicLong requestCount = new AtomicLong();
+	private final AtomicLong connectionCount = new AtomicLong();
+	private final AtomicLong notModifiedCount = new AtomicLong();
+	private final Map<String, TransferVolume> transfers = new HashMap<>();
+
+	public PageFetcher(Properties properties) {
+		int maxTotal = Util.getIntegerProperty(properties, "httpMaxConnections", 20);
+		int maxPerRoute = Util.getIntegerProperty(properties, "httpMaxConnectionsPerRoute", 2);
+		final int keepAliveSeconds = Util.getIntegerProperty(properties, "httpKeepAliveSeconds", 30);
+		int connectTimeout = Util.getIntegerProperty(properties, "httpConnectTimeoutMillis", 20000);
+		int socketTimeout = Util.getIntegerProperty(properties, "httpSocketTimeoutMillis", 60000);
+		this.maxThrottleRetries = Util.getIntegerProperty(properties, "rateLimit.maxThrottleRetries", 3);
+		this.rateLimiter = new HostRateLimiter(properties);
+		this.retryPolicy = RetryPolicy.fromProperties(properties);
+
+		this.connectionManager = new PoolingHttpClientConnectionManager(
+				new CountingConnectionFactory());
+		this.connectionManager.setMaxTotal(maxTotal);
+		this.connectionManager.setDefaultMaxPerRoute(maxPerRoute);
+		this.connectionManager.setDefaultConnectionConfig(ConnectionConfig.DEFAULT);
+
+		/*
+		 * compression is negotiated and decoded by ourselves
+		 * in order to account the transferred bytes
+		 */
+		this.client = HttpClientBuilder.create()
+				.disableContentCompression()
+				.setConnectionManager(this.connectionManager)
+				.setKeepAliveStrategy(new ConnectionKeepAliveStrategy() {
+
+					@Override
+					public long getKeepAliveDuration(HttpResponse response,
+							HttpContext context) {
+						long duration = DefaultConnectionKeepAliveStrategy.INSTANCE
+								.getKeepAliveDuration(response, context);
+						if (duration < 0) {
+							/*
+							 * the server did not state a timeout,
+							 * do not keep the connection forever
+							 */
+							return keepAliveSeconds * 1000L;
+						}
+						return duration;
+					}
+				})
+				.setDefaultRequestConfig(
+						RequestConfig.custom()
+								.setConnectTimeout(connectTimeout)
+								.setSocketTimeout(socketTimeout)
+								.build()).build();
+
+		this.evictor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "http-connection-evictor");
+				t.setDaemon(true);
+				return t;
+			}
+		});
+		this.evictor.scheduleWithFixedDelay(new Runnable() {
+
+			@Override
+			public void run() {
+				connectionManager.closeExpiredConnections();
+				connectionManager.closeIdleConnections(keepAliveSeconds, TimeUnit.SECONDS);
+			}
+		}, keepAliveSeconds, keepAliveSeconds, TimeUnit.SECONDS);
+	}
+
+	public Page fetch(String url) throws IOException, InterruptedException {
+		return fetch(url, null);
+	}
+
+	/**
+	 * Fetches the given URL and reads the complete body. The response
+	 * is always consumed so that its connection returns to the pool.
+	 * If validators of an earlier fetch are provided, the request is sent
+	 * as a conditional GET and the body is skipped if the server responds
+	 * with 304 (Not Modified).
+	 * Every request waits for the rate limiter of its host. Responses
+	 * signalling overload (429, 503) make the limiter back off and the
+	 * request is repeated up to <code>rateLimit.maxThrottleRetries</code> times.
+	 * Transport errors and server errors are retried according to the
+	 * configured {@link RetryPolicy}.
+	 * 
+	 * @param url the URL to fetch
+	 * @param validator the validators of the last fetch, may be null
+	 * @return the fetched page
+	 * @throws IOException on any transport error
+	 * @throws InterruptedException if interrupted while waiting for the
+	 * rate limiter
+	 */
+	public Page fetch(String url, PageValidator validator) throws IOException, InterruptedException {
+		return fetch(url, validator, null);
+	}
+
+	/**
+	 * Starts fetching the given URL on the provided executor.
+	 * 
+	 * @param url the URL to fetch
+	 * @param validator the validators of the last fetch, may be null
+	 * @param executor the executor running the fetch
+	 * @return the pending fetch, that can be awaited or cancelled
+	 */
+	public PendingPage fetchAsync(final String url, final PageValidator validator,
+			ExecutorService executor) {
+		final PendingPage pending = new PendingPage(url, validator);
+		pending.setFuture(executor.submit(new Callable<Page>() {
+
+			@Override
+			public Page call() throws Exception {
+				return fetch(url, validator, pending);
+			}
+		}));
+		return pending;
+	}
+
+	private Page fetch(String url, PageValidator validator, PendingPage handle)
+			throws IOException, InterruptedException {
+		String host = URI.create(url).getHost();
+		if (host == null) {
+			host = url;
+		}
+		int attempt = 0;
+		int retry = 0;
+		while (true) {
+			rateLimiter.acquire(host);
+			
+			Page result;
+			try {
+				result = execute(url, host, validator, handle);
+			} catch (IOException e) {
+				if (retry >= retryPolicy.getMaxRetries() || (handle != null && handle.isCancelled())) {
+					throw e;
+				}
+				awaitRetry(url, retry++, e.toString());
+				continue;
+			}
+			
+			int status = result.getStatusCode();
+			if (status == HTTP_TOO_MANY_REQUESTS || status == HttpStatus.SC_SERVICE_UNAVAILABLE) {
+				rateLimiter.backOff(host, result.getRetryAfterMillis());
+				if (attempt++ < maxThrottleRetries) {
+					logger.info(String.format("%s responded with %s, retrying", url, status));
+					continue;
+				}
+			}
+			else if (status >= HttpStatus.SC_INTERNAL_SERVER_ERROR && retry < retryPolicy.getMaxRetries()) {
+				awaitRetry(url, retry++, "status " + status);
+				continue;
+			}
+			else if (status < HttpStatus.SC_BAD_REQUEST) {
+				rateLimiter.onSuccess(host);
+			}
+			return result;
+		}
+	}
+
+	private void awaitRetry(String url, int retry, String reason) throws InterruptedException {
+		long delay = retryPolicy.delayFor(retry);
+		logger.info(String.format("Fetching %s failed (%s), retry %s of %s in %s ms",
+				url, reason, retry + 1, retryPolicy.getMaxRetries(), delay));
+		Thread.sleep(delay);
+	}
+
+	private Page execute(String url, String host, PageValidator validator,
+			PendingPage handle) throws IOException {
+		HttpGet get = new HttpGet(url);
+		if (handle != null) {
+			handle.setRequest(get);
+		}
+		get.setHeader(HttpHeaders.ACCEPT_ENCODING, ACCEPTED_ENCODINGS);
+		if (validator != null) {
+			if (validator.getEtag() != null) {
+				get.setHeader(HttpHeaders.IF_NONE_MATCH, validator.getEtag());
+			}
+			if (validator.getLastModified() != null) {
+				get.setHeader(HttpHeaders.IF_MODIFIED_SINCE, validator.getLastModified());
+			}
+		}
+		
+		requestCount.incrementAndGet();
+		CloseableHttpResponse resp = this.client.execute(get);
+		try {
+			int status = resp.getStatusLine().getStatusCode();
+			if (status == HttpStatus.SC_NOT_MODIFIED) {
+				notModifiedCount.incrementAndGet();
+			}
+			
+			HttpEntity entity = resp.getEntity();
+			StringBuilder content = null;
+			if (entity != null) {
+				CountingInputStream wire = new CountingInputStream(entity.getContent());
+				InputStream body = decompress(wire, entity);
+				CountingInputStream decoded = new CountingInputStream(body);
+				long sizeHint = body == wire ? entity.getContentLength() : -1;
+				try {
+					content = Util.readStream(decoded, resolveCharset(entity), sizeHint);
+				} finally {
+					recordTransfer(host, wire.getCount(), decoded.getCount());
+				}
+				EntityUtils.consume(entity);
+			}
+			return new Page(url, status, content,
+					headerValue(resp, HttpHeaders.ETAG),
+					headerValue(resp, HttpHeaders.LAST_MODIFIED),
+					parseRetryAfter(headerValue(resp, HttpHeaders.RETRY_AFTER)));
+		} finally {
+			resp.close();
+		}
+	}
+
+	/**
+	 * @param value the Retry-After header, either seconds or an HTTP date
+	 * @return the delay in milliseconds or -1 if not available
+	 */
+	protected static long parseRetryAfter(String value) {
+		if (value == null || value.trim().isEmpty()) {
+			return -1;
+		}
+		try {
+			return Math.max(0, Long.parseLong(value.trim()) * 1000);
+		} catch (NumberFormatException e) {
+			Date date = DateUtils.parseDate(value.trim());
+			if (date != null) {
+				return Math.max(0, date.getTime() - System.currentTimeMillis());
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * wraps the raw entity stream according to its Content-Encoding
+	 */
+	private static InputStream decompress(CountingInputStream wire, HttpEntity entity) throws IOException {
+		Header encoding = entity.getContentEncoding();
+		if (encoding == null) {
+			return wire;
+		}
+		String value = encoding.getValue().trim().toLowerCase(Locale.ROOT);
+		if (value.equals("gzip") || value.equals("x-gzip")) {
+			return new GZIPInputStream(wire, 8192);
+		}
+		if (value.equals("deflate")) {
+			return inflate(wire);
+		}
+		if (!value.isEmpty() && !value.equals("identity")) {
+			logger.warn("Unsupported content encoding: " + value);
+		}
+		return wire;
+	}
+
+	/**
+	 * "deflate" is meant to be zlib-wrapped but some servers send raw
+	 * deflate data. The zlib header is checked explicitly as the
+	 * DeflateInputStream of httpclient misreads zlib streams starting
+	 * with a dynamic Huffman block.
+	 */
+	private static InputStream inflate(InputStream wire) throws IOException {
+		PushbackInputStream pushback = new PushbackInputStream(wire, 2);
+		int cmf = pushback.read();
+		if (cmf == -1) {
+			return pushback;
+		}
+		int flg = pushback.read();
+		if (flg != -1) {
+			pushback.unread(flg);
+		}
+		pushback.unread(cmf);
+		boolean zlib = flg != -1 && (cmf & 0x0f) == 8 && ((cmf << 8) | flg) % 31 == 0;
+		return new InflaterInputStream(pushback, new Inflater(!zlib), 8192);
+	}
+
+	private void recordTransfer(String host, long wireBytes, long contentBytes) {
+		synchronized (this.transfers) {
+			TransferVolume current = this.transfers.get(host);
+			if (current == null) {
+				current = new TransferVolume(0, 0);
+			}
+			this.transfers.put(host, current.plus(wireBytes, contentBytes));
+		}
+	}
+
+	/**
+	 * @return the charset of the Content-Type header or null if not
+	 * provided or not supported
+	 */
+	private static Charset resolveCharset(HttpEntity entity) {
+		try {
+			return ContentType.getOrDefault(entity).getCharset();
+		} catch (ParseException | UnsupportedCharsetException e) {
+			logger.debug("Invalid content type: " + entity.getContentType(), e);
+			return null;
+		}
+	}
+
+	private static String headerValue(HttpResponse resp, String name) {
+		Header h = resp.getFirstHeader(name);
+		return h == null ? null : h.getValue();
+	}
+
+	public FetchStatistics getStatistics() {
+		Map<String, TransferVolume> transferCopy;
+		synchronized (this.transfers) {
+			transferCopy = new HashMap<>(this.transfers);
+		}
+		return new FetchStatistics(requestCount.get(), connectionCount.get(),
+				notModifiedCount.get(), this.connectionManager.getTotalStats().getAvailable(),
+				transferCopy);
+	}
+
+	public void shutdown() {
+		logger.info("Shutting down fetcher: " + getStatistics());
+		this.evictor.shutdownNow();
+		try {
+			this.client.close();
+		} catch (IOException e) {
+			logger.warn("Could not close http client", e);
+		}
+		this.connectionManager.shutdown();
+	}
+
+	/**
+	 * counts every newly established connection, so that the number of
+	 * handshakes can be compared with the number of requests.
+	 */
+	private class CountingConnectionFactory implements
+			HttpConnectionFactory<HttpRoute, ManagedHttpClientConnection> {
+
+		@Override
+		public ManagedHttpClientConnection create(HttpRoute route,
+				ConnectionConfig config) {
+			connectionCount.incrementAndGet();
+			logger.debug("Opening new connection for " + route);
+			return ManagedHttpClientConnectionFactory.INSTANCE.create(route, config);
+		}
+
+	}
+
+}
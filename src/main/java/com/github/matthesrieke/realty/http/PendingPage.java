@@ -0,0 +1,123 @@
+/**
+ * Copyright (C) 2015 Matthes Rieke
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.matthesrieke.realty.http;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import org.apache.http.client.methods.HttpGet;
+
+import com.github.matthesrieke.realty.storage.PageValidator;
+
+/**
+ * A page fetch running in the background. Cancelling it aborts
+ * the underlying request if it is already in flight.
+ */
+public class PendingPage {
+
+	private final String url;
+	private final PageValidator validator;
+	private Future<Page> future;
+	private HttpGet request;
+	private boolean cancelled;
+
+	PendingPage(String url, PageValidator validator) {
+		this.url = url;
+		this.validator = validator;
+	}
+
+	public String getUrl() {
+		return url;
+	}
+
+	public PageValidator getValidator() {
+		return validator;
+	}
+
+	synchronized void setFuture(Future<Page> future) {
+		this.future = future;
+		if (cancelled) {
+			future.cancel(true);
+		}
+	}
+
+	/**
+	 * registers the request that is about to be executed
+	 * 
+	 * @throws InterruptedIOException if the fetch has been cancelled
+	 */
+	synchronized void setRequest(HttpGet request) throws InterruptedIOException {
+		if (cancelled) {
+			throw new InterruptedIOException("Fetch of " + url + " has been cancelled");
+		}
+		this.request = request;
+	}
+
+	/**
+	 * Waits for the fetch to complete.
+	 * 
+	 * @return the fetched page
+	 * @throws IOException if the fetch failed or has been cancelled
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	public Page get() throws IOException, InterruptedException {
+		Future<Page> f;
+		synchronized (this) {
+			f = this.future;
+		}
+		try {
+			return f.get();
+		} catch (CancellationException e) {
+			throw new InterruptedIOException("Fetch of " + url + " has been cancelled");
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof IOException) {
+				throw (IOException) cause;
+			}
+			if (cause instanceof InterruptedException) {
+				throw new InterruptedIOException("Fetch of " + url + " has been interrupted");
+			}
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			throw new IOException(cause);
+		}
+	}
+
+	public synchronized boolean isCancelled() {
+		return cancelled;
+	}
+
+	/**
+	 * cancels the fetch and aborts its request if in flight
+	 */
+	public synchronized void cancel() {
+		if (cancelled) {
+			return;
+		}
+		cancelled = true;
+		if (request != null) {
+			request.abort();
+		}
+		if (future != null) {
+			future.cancel(true);
+		}
+	}
+
+}
@@ -0,0 +1,64 @@
+/**
+ * Copyright (C) 2015 Matthes Rieke
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.matthesrieke.realty.http;
+
+import java.util.Properties;
+import java.util.concurrent.ThreadLocalRandom;
+
+import com.github.matthesrieke.realty.Util;
+
+/**
+ * Exponential backoff with jitter for failed fetches. The delay before
+ * retry <code>n</code> (starting at 0) is drawn from
+ * <code>[d/2, d]</code> with <code>d = min(maxDelay, baseDelay * 2^n)</code>.
+ */
+public class RetryPolicy {
+
+	private final int maxRetries;
+	private final long baseDelayMillis;
+	private final long maxDelayMillis;
+
+	public RetryPolicy(int maxRetries, long baseDelayMillis, long maxDelayMillis) {
+		this.maxRetries = Math.max(0, maxRetries);
+		this.baseDelayMillis = Math.max(1, baseDelayMillis);
+		this.maxDelayMillis = Math.max(this.baseDelayMillis, maxDelayMillis);
+	}
+
+	public static RetryPolicy fromProperties(Properties properties) {
+		return new RetryPolicy(
+				Util.getIntegerProperty(properties, "retry.maxRetries", 3),
+				Util.getIntegerProperty(properties, "retry.baseDelayMillis", 2000),
+				Util.getIntegerProperty(properties, "retry.maxDelayMillis", 60000));
+	}
+
+	public int getMaxRetries() {
+		return maxRetries;
+	}
+
+	/**
+	 * @param retry the number of the retry, starting at 0
+	 * @return the jittered delay in milliseconds
+	 */
+	public long delayFor(int retry) {
+		long delay = baseDelayMillis << Math.min(retry, 30);
+		if (delay <= 0 || delay > maxDelayMillis) {
+			delay = maxDelayMillis;
+		}
+		long half = delay / 2;
+		return half + ThreadLocalRandom.current().nextLong(delay - half + 1);
+	}
+
+}
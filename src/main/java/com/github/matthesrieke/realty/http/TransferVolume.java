@@ -0,0 +1,63 @@
+/**
+ * Copyright (C) 2015 Matthes Rieke
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.matthesrieke.realty.http;
+
+/**
+ * The bytes transferred over the wire and the bytes of the
+ * decompressed content for one provider host.
+ */
+public class TransferVolume {
+
+	private final long wireBytes;
+	private final long contentBytes;
+
+	public TransferVolume(long wireBytes, long contentBytes) {
+		this.wireBytes = wireBytes;
+		this.contentBytes = contentBytes;
+	}
+
+	public long getWireBytes() {
+		return wireBytes;
+	}
+
+	public long getContentBytes() {
+		return contentBytes;
+	}
+
+	public long getSavedBytes() {
+		return Math.max(0, contentBytes - wireBytes);
+	}
+
+	public TransferVolume plus(long wire, long content) {
+		return new TransferVolume(wireBytes + wire, contentBytes + content);
+	}
+
+	public TransferVolume since(TransferVolume earlier) {
+		if (earlier == null) {
+			return this;
+		}
+		return new TransferVolume(wireBytes - earlier.wireBytes,
+				contentBytes - earlier.contentBytes);
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%s KB transferred for %s KB content (%s%% saved)",
+				wireBytes / 1024, contentBytes / 1024,
+				contentBytes == 0 ? 0 : getSavedBytes() * 100 / contentBytes);
+	}
+
+}
@@ -0,0 +1,241 @@
+/**
+ * Copyright (C) 2015 Matthes Rieke
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.matthesrieke.realty.rules;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import com.github.matthesrieke.realty.Ad.PropertyKeys;
+
+/**
+ * Assigns an extracted value to a property of an ad, e.g.
+ * "PRICE | part 0". The value is passed through the transformations
+ * from left to right:
+ * <ul>
+ * <li>trim: removes leading and trailing whitespace</li>
+ * <li>normalize: trims and collapses inner whitespace</li>
+ * <li>before &lt;text&gt;: the part before the first occurrence of text</li>
+ * <li>prefix &lt;text&gt;: prepends the text</li>
+ * <li>part &lt;n&gt;: the n-th of the comma separated parts, normalized</li>
+ * <li>word &lt;n&gt;: the n-th of the space separated words</li>
+ * <li>append: appends the value to a present one instead of keeping
+ * the first</li>
+ * </ul>
+ * Values of {@link PropertyKeys#FEATURES} are split into their comma
+ * separated parts and added to the feature list.
+ */
+public class Assignment {
+
+	private final PropertyKeys key;
+	private final List<Transformation> transformations;
+	private final boolean append;
+
+	private Assignment(PropertyKeys key, List<Transformation> transformations,
+			boolean append) {
+		this.key = key;
+		this.transformations = transformations;
+		this.append = append;
+	}
+
+	/**
+	 * @throws IllegalArgumentException if the property or a transformation
+	 * is unknown
+	 */
+	public static Assignment parse(String expression) {
+		String[] tokens = expression.split("\\|");
+		PropertyKeys key = resolveKey(tokens[0]);
+		List<Transformation> transformations = new ArrayList<>();
+		boolean append = false;
+		for (int i = 1; i < tokens.length; i++) {
+			String token = tokens[i].trim();
+			if (token.equals("append")) {
+				append = true;
+			}
+			else {
+				transformations.add(Transformation.parse(token));
+			}
+		}
+		return new Assignment(key, Collections.unmodifiableList(transformations), append);
+	}
+
+	/**
+	 * @throws IllegalArgumentException if there is no such property
+	 */
+	static PropertyKeys resolveKey(String name) {
+		try {
+			return PropertyKeys.valueOf(name.trim());
+		} catch (IllegalArgumentException e) {
+			throw new IllegalArgumentException("Unknown property: " + name.trim(), e);
+		}
+	}
+
+	public PropertyKeys getKey() {
+		return key;
+	}
+
+	/**
+	 * @param value the extracted value, may be null
+	 * @param properties the properties of the ad. A present value is kept
+	 * unless the assignment appends
+	 * @param features the feature list of the ad
+	 */
+	public void assign(String value, Map<PropertyKeys, String> properties,
+			List<String> features) {
+		for (Transformation t : transformations) {
+			if (value == null) {
+				return;
+			}
+			value = t.apply(value);
+		}
+		if (value == null || value.isEmpty()) {
+			return;
+		}
+		
+		if (key == PropertyKeys.FEATURES) {
+			features.addAll(split(value));
+			return;
+		}
+		
+		String present = properties.get(key);
+		if (present == null) {
+			properties.put(key, value);
+		}
+		else if (append) {
+			properties.put(key, present.concat(value));
+		}
+	}
+
+	@Override
+	public String toString() {
+		return key + (append ? " append " : " ") + transformations;
+	}
+
+	static String normalize(String value) {
+		return value.trim().replaceAll("\\s+", " ");
+	}
+
+	private static List<String> split(String value) {
+		List<String> result = new ArrayList<>();
+		for (String part : value.split(",")) {
+			part = normalize(part);
+			if (!part.isEmpty()) {
+				result.add(part);
+			}
+		}
+		return result;
+	}
+
+	private static class Transformation {
+
+		private enum Kind {
+			TRIM, NORMALIZE, BEFORE, PREFIX, PART, WORD
+		}
+
+		private final Kind kind;
+		private final String argument;
+		private final int index;
+
+		private Transformation(Kind kind, String argument, int index) {
+			this.kind = kind;
+			this.argument = argument;
+			this.index = index;
+		}
+
+		static Transformation parse(String expression) {
+			String[] tokens = expression.split("\\s+", 2);
+			Kind kind;
+			try {
+				kind = Kind.valueOf(tokens[0].toUpperCase(Locale.ENGLISH));
+			} catch (IllegalArgumentException e) {
+				throw new IllegalArgumentException("Unknown transformation: " + expression, e);
+			}
+			String argument = tokens.length > 1 ? tokens[1] : null;
+			
+			int index = 0;
+			switch (kind) {
+			case PART:
+			case WORD:
+				index = parseIndex(kind, requireArgument(kind, argument));
+				break;
+			case BEFORE:
+			case PREFIX:
+				requireArgument(kind, argument);
+				break;
+			default:
+				break;
+			}
+			return new Transformation(kind, argument, index);
+		}
+
+		private static int parseIndex(Kind kind, String argument) {
+			try {
+				int result = Integer.parseInt(argument.trim());
+				if (result >= 0) {
+					return result;
+				}
+			} catch (NumberFormatException e) {
+				/*
+				 * reported below
+				 */
+			}
+			throw new IllegalArgumentException("Invalid index of transformation " + kind + ": " + argument);
+		}
+
+		private static String requireArgument(Kind kind, String argument) {
+			if (argument == null) {
+				throw new IllegalArgumentException("Missing argument of transformation " + kind);
+			}
+			return argument;
+		}
+
+		String apply(String value) {
+			switch (kind) {
+			case TRIM:
+				return value.trim();
+			case NORMALIZE:
+				return normalize(value);
+			case BEFORE:
+				int end = value.indexOf(argument);
+				return end < 0 ? value : value.substring(0, end);
+			case PREFIX:
+				return argument.concat(value);
+			case PART:
+				return element(value.split(","), index, true);
+			case WORD:
+				return element(value.split(" "), index, false);
+			default:
+				throw new IllegalStateException("Unsupported transformation " + kind);
+			}
+		}
+
+		private static String element(String[] values, int index, boolean normalize) {
+			if (index >= values.length) {
+				return null;
+			}
+			return normalize ? normalize(values[index]) : values[index];
+		}
+
+		@Override
+		public String toString() {
+			return argument == null ? kind.name().toLowerCase(Locale.ENGLISH) : kind.name().toLowerCase(Locale.ENGLISH) + " " + argument;
+		}
+
+	}
+
+}
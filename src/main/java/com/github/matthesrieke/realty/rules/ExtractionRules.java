@@ -0,0 +1,275 @@
+/**
+ * Copyright (C) 2015 Matthes Rieke
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.matthesrieke.realty.rules;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+import com.github.matthesrieke.realty.Ad.PropertyKeys;
+import com.github.matthesrieke.realty.html.Selector;
+
+/**
+ * The extraction rules of a provider, read from a properties file
+ * (UTF-8) such as:
+ * 
+ * <pre>
+ * provider = wohnungen.ms
+ * host = wohnungen.ms
+ * pageLink = {base}/seite/{page}
+ * record = article
+ * field.ID = h3.tile-title &gt; a ::attr(href)
+ * field.DESCRIPTION = div.seb-content &gt; p
+ * pair = table.table-seb
+ * pair.label = td.tdl span
+ * pair.value = td.tdr ::text
+ * label.Stadtteil = LOCATION | normalize
+ * </pre>
+ * 
+ * Every element matched by the record selector holds one ad. Fields are
+ * selected relative to the record (see {@link ValueRule}), pairs are
+ * label and value elements whose value is assigned by the first
+ * "label.*" rule contained in the label, in the order of the file. The
+ * first value of a property is kept unless it is appended. A record
+ * without an ID is skipped, unless "generatedId" names a property to
+ * derive the ID from, and so is a record without the properties listed
+ * in "required". With "keepSource = true" every ad keeps the normalized
+ * markup of its record (see {@link com.github.matthesrieke.realty.SourceFragment}).
+ */
+public class ExtractionRules {
+
+	private static final String RESOURCE_PATTERN = "/rules/%s.properties";
+	private static final String FIELD = "field.";
+	private static final String LABEL = "label.";
+	private static final String BASE = "{base}";
+	private static final String PAGE = "{page}";
+	private static final Set<String> KEYS = new HashSet<>(Arrays.asList("provider",
+			"host", "firstPage", "firstPageLink", "pageLink", "record", "pair",
+			"pair.label", "pair.value", "generatedId", "required", "keepSource"));
+
+	private final String provider;
+	private final String host;
+	private final int firstPage;
+	private final String firstPageLink;
+	private final String pageLink;
+	private final List<Selector> records;
+	private final List<ValueRule> fields = new ArrayList<>();
+	private final List<Selector> pairs;
+	private final ValueRule pairLabel;
+	private final ValueRule pairValue;
+	private final Map<String, List<Assignment>> labels = new LinkedHashMap<>();
+	private final PropertyKeys generatedId;
+	private final List<PropertyKeys> required = new ArrayList<>();
+	private final boolean keepSource;
+
+	private ExtractionRules(OrderedProperties properties) {
+		this.provider = requireProperty(properties, "provider");
+		this.host = requireProperty(properties, "host");
+		this.firstPage = parseFirstPage(properties.getProperty("firstPage", "1"));
+		this.firstPageLink = properties.getProperty("firstPageLink", BASE).trim();
+		this.pageLink = properties.getProperty("pageLink", BASE).trim();
+		this.records = Selector.parseList(requireProperty(properties, "record"));
+		
+		String pair = properties.getProperty("pair");
+		this.pairs = pair == null ? Collections.<Selector>emptyList() : Selector.parseList(pair);
+		this.pairLabel = pair == null ? null : ValueRule.parse(requireProperty(properties, "pair.label"), null);
+		this.pairValue = pair == null ? null : ValueRule.parse(requireProperty(properties, "pair.value"), null);
+		
+		String generated = properties.getProperty("generatedId");
+		this.generatedId = generated == null ? null : Assignment.resolveKey(generated);
+		String requiredKeys = properties.getProperty("required");
+		if (requiredKeys != null) {
+			for (String key : requiredKeys.split(",")) {
+				this.required.add(Assignment.resolveKey(key));
+			}
+		}
+		
+		this.keepSource = Boolean.parseBoolean(properties.getProperty("keepSource", "false").trim());
+		
+		for (String key : properties.keys) {
+			String value = properties.getProperty(key);
+			if (key.startsWith(FIELD)) {
+				this.fields.add(ValueRule.parse(value, key.substring(FIELD.length())));
+			}
+			else if (key.startsWith(LABEL)) {
+				List<Assignment> assignments = new ArrayList<>();
+				for (String assignment : value.split(";")) {
+					assignments.add(Assignment.parse(assignment));
+				}
+				this.labels.put(key.substring(LABEL.length()), assignments);
+			}
+			else if (!KEYS.contains(key)) {
+				throw new IllegalArgumentException("Unknown extraction rule: " + key);
+			}
+		}
+	}
+
+	/**
+	 * @param provider the name of the rules file, e.g. "wn-immo"
+	 * @param directory an optional directory which takes precedence over
+	 * the rules bundled on the classpath
+	 * @throws IOException if the rules cannot be read
+	 * @throws IllegalArgumentException if the rules are invalid
+	 */
+	public static ExtractionRules load(String provider, File directory) throws IOException {
+		String resource = String.format(RESOURCE_PATTERN, provider);
+		InputStream is = null;
+		if (directory != null) {
+			File file = new File(directory, resource.substring(resource.lastIndexOf('/') + 1));
+			if (file.isFile()) {
+				is = new FileInputStream(file);
+			}
+		}
+		if (is == null) {
+			is = ExtractionRules.class.getResourceAsStream(resource);
+		}
+		if (is == null) {
+			throw new IOException("No extraction rules found for provider " + provider);
+		}
+		
+		try (Reader reader = new InputStreamReader(is, StandardCharsets.UTF_8)) {
+			return parse(reader);
+		} catch (IllegalArgumentException e) {
+			throw new IllegalArgumentException(String.format("Invalid extraction rules of provider %s: %s",
+					provider, e.getMessage()), e);
+		}
+	}
+
+	/**
+	 * @throws IllegalArgumentException if the rules are invalid
+	 */
+	public static ExtractionRules parse(Reader reader) throws IOException {
+		OrderedProperties properties = new OrderedProperties();
+		properties.load(reader);
+		return new ExtractionRules(properties);
+	}
+
+	private static String requireProperty(Properties properties, String key) {
+		String result = properties.getProperty(key);
+		if (result == null || result.trim().isEmpty()) {
+			throw new IllegalArgumentException("Missing extraction rule: " + key);
+		}
+		return result.trim();
+	}
+
+	private static int parseFirstPage(String value) {
+		try {
+			return Integer.parseInt(value.trim());
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Invalid extraction rule: firstPage = " + value, e);
+		}
+	}
+
+	public String getProvider() {
+		return provider;
+	}
+
+	public boolean supportsParsing(String url) {
+		return url != null && url.contains(host);
+	}
+
+	public int getFirstPageIndex() {
+		return firstPage;
+	}
+
+	public String prepareLinkForPage(String baseLink, int page) {
+		String pattern = page == firstPage ? firstPageLink : pageLink;
+		return pattern.replace(BASE, baseLink.trim()).replace(PAGE, Integer.toString(page));
+	}
+
+	public List<Selector> getRecords() {
+		return records;
+	}
+
+	public List<ValueRule> getFields() {
+		return fields;
+	}
+
+	public List<Selector> getPairs() {
+		return pairs;
+	}
+
+	public ValueRule getPairLabel() {
+		return pairLabel;
+	}
+
+	public ValueRule getPairValue() {
+		return pairValue;
+	}
+
+	/**
+	 * @return the assignments of the first label rule contained in the
+	 * label, or an empty list
+	 */
+	public List<Assignment> resolveLabel(String label) {
+		for (Map.Entry<String, List<Assignment>> entry : labels.entrySet()) {
+			if (label.contains(entry.getKey())) {
+				return entry.getValue();
+			}
+		}
+		return Collections.emptyList();
+	}
+
+	/**
+	 * @return the property the ID is generated from, or null
+	 */
+	public PropertyKeys getGeneratedId() {
+		return generatedId;
+	}
+
+	public List<PropertyKeys> getRequired() {
+		return required;
+	}
+
+	/**
+	 * @return true if the ads keep the markup of their record
+	 */
+	public boolean isKeepSource() {
+		return keepSource;
+	}
+
+	/**
+	 * keeps the order of the keys, which is the precedence of the rules
+	 */
+	private static class OrderedProperties extends Properties {
+
+		private static final long serialVersionUID = 1L;
+
+		private final Set<String> keys = new LinkedHashSet<>();
+
+		@Override
+		public synchronized Object put(Object key, Object value) {
+			keys.add((String) key);
+			return super.put(key, value);
+		}
+
+	}
+
+}
@@ -0,0 +1,474 @@
+/**
+ * Copyright (C) 2015 Matthes Rieke
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.matthesrieke.realty.rules;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+import org.joda.time.DateTime;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.matthesrieke.realty.Ad;
+import com.github.matthesrieke.realty.Ad.PropertyKeys;
+import com.github.matthesrieke.realty.SourceFragment;
+import com.github.matthesrieke.realty.html.HtmlElement;
+import com.github.matthesrieke.realty.html.HtmlHandler;
+import com.github.matthesrieke.realty.html.MarkupWriter;
+import com.github.matthesrieke.realty.html.Selector;
+
+/**
+ * Extracts the ads of one page in a single pass over the events of a
+ * {@link com.github.matthesrieke.realty.html.HtmlTokenizer}. All
+ * selectors of the {@link ExtractionRules} advance as states along the
+ * open elements: a state waits for the next step of its selector and is
+ * handed down to the children (or all descendants) of an element. A
+ * matched record or pair seeds the states of its own rules, a matched
+ * value is captured until its element ends. Neither a tree is built nor
+ * a record scanned once per field. If the rules keep the source, the
+ * events of a record are written to its own buffer, which is detached
+ * from the page.
+ */
+public class RuleMatcher implements HtmlHandler {
+
+	private static final Logger logger = LoggerFactory
+			.getLogger(RuleMatcher.class);
+	
+	private static final String GENERATED_ID_PREFIX = "generated_";
+
+	private enum Target {
+		RECORD, PAIR, FIELD, LABEL, VALUE
+	}
+
+	private final ExtractionRules rules;
+	private final DateTime crawlTime = new DateTime();
+	private final List<Ad> ads = new ArrayList<>();
+	private final List<Frame> frames = new ArrayList<>();
+	private final List<Capture> captures = new ArrayList<>();
+	private int depth;
+	private int sequence;
+	private Record record;
+
+	public RuleMatcher(ExtractionRules rules) {
+		this.rules = rules;
+		
+		Frame root = new Frame();
+		for (Selector selector : rules.getRecords()) {
+			root.add(new State(Target.RECORD, selector, 0, -1, null));
+		}
+		this.frames.add(root);
+	}
+
+	/**
+	 * @return the ads of the records ended so far
+	 */
+	public List<Ad> getAds() {
+		return ads;
+	}
+
+	@Override
+	public void startElement(HtmlElement element) throws IOException {
+		for (Capture capture : captures) {
+			if (capture.depth == depth) {
+				capture.closed = capture.ownText;
+			}
+		}
+		
+		Frame parent = frames.get(depth);
+		Frame frame = push(element);
+		for (State state : parent.states) {
+			if (isObsolete(state)) {
+				continue;
+			}
+			if (!state.selector.isChildStep(state.step)) {
+				frame.add(state);
+			}
+			if (state.selector.matches(state.step, element)) {
+				if (state.step + 1 < state.selector.length()) {
+					frame.add(state.next());
+				}
+				else {
+					matched(state, frame);
+				}
+			}
+		}
+		
+		if (record != null && record.source != null) {
+			record.source.startElement(element);
+		}
+	}
+
+	@Override
+	public void endElement(HtmlElement element) throws IOException {
+		if (record != null && record.source != null) {
+			record.source.endElement(element);
+		}
+		
+		for (int i = captures.size() - 1; i >= 0; i--) {
+			Capture capture = captures.get(i);
+			if (capture.depth == depth) {
+				captures.remove(i);
+				capture.state.scope.accept(capture.state, capture.sequence, capture.value());
+			}
+		}
+		
+		Frame frame = frames.get(depth);
+		if (frame.scope != null) {
+			frame.scope.end();
+			if (frame.scope == record) {
+				record = null;
+			}
+			frame.scope = null;
+		}
+		depth--;
+	}
+
+	@Override
+	public void characters(CharSequence text) throws IOException {
+		if (record != null && record.source != null) {
+			record.source.characters(text);
+		}
+		for (Capture capture : captures) {
+			if (!capture.closed) {
+				capture.text.append(text);
+			}
+		}
+	}
+
+	@Override
+	public void endDocument() throws IOException {
+	}
+
+	private Frame push(HtmlElement element) {
+		depth++;
+		if (depth == frames.size()) {
+			frames.add(new Frame());
+		}
+		Frame result = frames.get(depth);
+		result.element = element;
+		result.states.clear();
+		return result;
+	}
+
+	/**
+	 * @return true if no record may start within the current one or if
+	 * the value of the state has already been found
+	 */
+	private boolean isObsolete(State state) {
+		if (state.target == Target.RECORD) {
+			return record != null;
+		}
+		return state.scope.isSatisfied(state);
+	}
+
+	private void matched(State state, Frame frame) {
+		switch (state.target) {
+		case RECORD:
+			record = new Record(frame.element);
+			frame.scope = record;
+			for (int i = 0; i < rules.getFields().size(); i++) {
+				seed(frame, Target.FIELD, rules.getFields().get(i), i, record);
+			}
+			for (Selector selector : rules.getPairs()) {
+				frame.add(new State(Target.PAIR, selector, 0, -1, record));
+			}
+			break;
+		case PAIR:
+			if (frame.scope == null) {
+				Pair pair = new Pair(record);
+				frame.scope = pair;
+				seed(frame, Target.LABEL, rules.getPairLabel(), -1, pair);
+				seed(frame, Target.VALUE, rules.getPairValue(), -1, pair);
+			}
+			break;
+		default:
+			capture(state, frame);
+			break;
+		}
+	}
+
+	private void seed(Frame frame, Target target, ValueRule rule, int slot, Scope scope) {
+		for (Selector selector : rule.getSelectors()) {
+			frame.add(new State(target, selector, 0, slot, scope));
+		}
+	}
+
+	private void capture(State state, Frame frame) {
+		ValueRule rule = resolveRule(state);
+		switch (rule.getOutput()) {
+		case ATTRIBUTE:
+			state.scope.accept(state, sequence++, rule.getAttribute(frame.element));
+			break;
+		default:
+			for (Capture capture : captures) {
+				if (capture.depth == depth && capture.state.isSameTarget(state)) {
+					/*
+					 * the element is matched by several selectors of the rule
+					 */
+					return;
+				}
+			}
+			captures.add(new Capture(state, depth, sequence++,
+					rule.getOutput() == ValueRule.Output.OWN_TEXT));
+			break;
+		}
+	}
+
+	private ValueRule resolveRule(State state) {
+		switch (state.target) {
+		case FIELD:
+			return rules.getFields().get(state.slot);
+		case LABEL:
+			return rules.getPairLabel();
+		default:
+			return rules.getPairValue();
+		}
+	}
+
+	private static class State {
+
+		private final Target target;
+		private final Selector selector;
+		private final int step;
+		private final int slot;
+		private final Scope scope;
+
+		State(Target target, Selector selector, int step, int slot, Scope scope) {
+			this.target = target;
+			this.selector = selector;
+			this.step = step;
+			this.slot = slot;
+			this.scope = scope;
+		}
+
+		State next() {
+			return new State(target, selector, step + 1, slot, scope);
+		}
+
+		boolean isSameTarget(State other) {
+			return target == other.target && slot == other.slot && scope == other.scope;
+		}
+
+		boolean isSame(State other) {
+			return isSameTarget(other) && selector == other.selector && step == other.step;
+		}
+
+	}
+
+	private static class Frame {
+
+		private final List<State> states = new ArrayList<>();
+		private HtmlElement element;
+		private Scope scope;
+
+		/**
+		 * nested elements may advance the same selector twice, which would
+		 * duplicate the matches
+		 */
+		void add(State state) {
+			for (State present : states) {
+				if (present.isSame(state)) {
+					return;
+				}
+			}
+			states.add(state);
+		}
+
+	}
+
+	private static class Capture {
+
+		private final State state;
+		private final int depth;
+		private final int sequence;
+		private final boolean ownText;
+		private final StringBuilder text = new StringBuilder();
+		private boolean closed;
+
+		Capture(State state, int depth, int sequence, boolean ownText) {
+			this.state = state;
+			this.depth = depth;
+			this.sequence = sequence;
+			this.ownText = ownText;
+		}
+
+		/**
+		 * @return the text, or null if the element does not start with
+		 * text and only its own text is captured
+		 */
+		String value() {
+			if (ownText && text.length() == 0) {
+				return null;
+			}
+			return text.toString();
+		}
+
+	}
+
+	private abstract static class Scope {
+
+		abstract boolean isSatisfied(State state);
+
+		/**
+		 * @param sequence the document order of the matched element. The
+		 * first non-empty value wins, independent of when it is complete
+		 */
+		abstract void accept(State state, int sequence, String value);
+
+		abstract void end();
+
+	}
+
+	private class Record extends Scope {
+
+		private final HtmlElement element;
+		private final String[] values;
+		private final int[] sequences;
+		private final Map<PropertyKeys, String> properties = new EnumMap<>(PropertyKeys.class);
+		private final List<String> features = new ArrayList<>();
+		private final List<String[]> pairs = new ArrayList<>();
+		private final StringBuilder markup;
+		private final MarkupWriter source;
+
+		Record(HtmlElement element) {
+			this.element = element;
+			this.values = new String[rules.getFields().size()];
+			this.sequences = new int[values.length];
+			this.markup = rules.isKeepSource() ? new StringBuilder() : null;
+			this.source = markup != null ? new MarkupWriter(markup) : null;
+		}
+
+		private boolean isMultiValued(int slot) {
+			return rules.getFields().get(slot).getAssignment().getKey() == PropertyKeys.FEATURES;
+		}
+
+		@Override
+		boolean isSatisfied(State state) {
+			return state.target == Target.FIELD && values[state.slot] != null;
+		}
+
+		@Override
+		void accept(State state, int sequence, String value) {
+			if (value == null || value.isEmpty()) {
+				return;
+			}
+			if (isMultiValued(state.slot)) {
+				rules.getFields().get(state.slot).getAssignment().assign(value, properties, features);
+			}
+			else if (values[state.slot] == null || sequence < sequences[state.slot]) {
+				values[state.slot] = value;
+				sequences[state.slot] = sequence;
+			}
+		}
+
+		void addPair(String label, String value) {
+			pairs.add(new String[] {label, value});
+		}
+
+		@Override
+		void end() {
+			for (int i = 0; i < values.length; i++) {
+				if (values[i] != null) {
+					rules.getFields().get(i).getAssignment().assign(values[i], properties, features);
+				}
+			}
+			for (String[] pair : pairs) {
+				for (Assignment assignment : rules.resolveLabel(pair[0])) {
+					assignment.assign(pair[1], properties, features);
+				}
+			}
+			
+			for (PropertyKeys key : rules.getRequired()) {
+				if (!properties.containsKey(key)) {
+					logger.warn("Could not parse entry, {} is missing: {}", key, element);
+					return;
+				}
+			}
+			
+			String id = properties.remove(PropertyKeys.ID);
+			PropertyKeys generatedId = rules.getGeneratedId();
+			if (id == null && generatedId != null && properties.containsKey(generatedId)) {
+				id = GENERATED_ID_PREFIX.concat(Integer.toString(properties.get(generatedId).hashCode()));
+			}
+			if (id == null) {
+				logger.debug("Skipping record without an ad: {}", element);
+				return;
+			}
+			
+			Ad ad = Ad.forId(id);
+			for (Map.Entry<PropertyKeys, String> property : properties.entrySet()) {
+				ad.putProperty(property.getKey(), property.getValue());
+			}
+			if (!features.isEmpty()) {
+				ad.setFeatureList(features);
+			}
+			ad.putProperty(PropertyKeys.PROVIDER, rules.getProvider());
+			ad.setDateTime(crawlTime);
+			if (markup != null) {
+				ad.setSource(SourceFragment.of(markup));
+			}
+			ads.add(ad);
+		}
+
+	}
+
+	private static class Pair extends Scope {
+
+		private final Record record;
+		private String label;
+		private String value;
+		private int labelSequence;
+		private int valueSequence;
+
+		Pair(Record record) {
+			this.record = record;
+		}
+
+		@Override
+		boolean isSatisfied(State state) {
+			return state.target == Target.LABEL ? label != null : value != null;
+		}
+
+		@Override
+		void accept(State state, int sequence, String text) {
+			if (text == null || text.isEmpty()) {
+				return;
+			}
+			if (state.target == Target.LABEL) {
+				if (label == null || sequence < labelSequence) {
+					label = text;
+					labelSequence = sequence;
+				}
+			}
+			else if (value == null || sequence < valueSequence) {
+				value = text;
+				valueSequence = sequence;
+			}
+		}
+
+		@Override
+		void end() {
+			if (label != null && value != null) {
+				record.addPair(label, value);
+			}
+		}
+
+	}
+
+}
@@ -0,0 +1,129 @@
+/**
+ * Copyright (C) 2015 Matthes Rieke
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.matthesrieke.realty.rules;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+import com.github.matthesrieke.realty.html.HtmlElement;
+import com.github.matthesrieke.realty.html.Selector;
+
+/**
+ * Selects a value relative to a record, e.g.
+ * "div.title-holder &gt; a ::attr(href) | before ?". The selectors are
+ * followed by an optional output:
+ * <ul>
+ * <li>none: the text of the element if it starts with text</li>
+ * <li>::text: the complete text content of the element</li>
+ * <li>::attr(name): the value of an attribute</li>
+ * </ul>
+ * and the transformations of an {@link Assignment}, if the rule assigns
+ * a property.
+ */
+public class ValueRule {
+
+	public enum Output {
+		OWN_TEXT, TEXT, ATTRIBUTE
+	}
+
+	private static final String TEXT = "::text";
+	private static final String ATTRIBUTE = "::attr(";
+
+	private final List<Selector> selectors;
+	private final Output output;
+	private final String attribute;
+	private final Assignment assignment;
+
+	private ValueRule(List<Selector> selectors, Output output, String attribute,
+			Assignment assignment) {
+		this.selectors = selectors;
+		this.output = output;
+		this.attribute = attribute;
+		this.assignment = assignment;
+	}
+
+	/**
+	 * @param expression the selectors, the output and the transformations
+	 * @param key the name of the assigned property, or null for a plain
+	 * value such as a label
+	 * @throws IllegalArgumentException if the expression is invalid
+	 */
+	public static ValueRule parse(String expression, String key) {
+		int pipe = expression.indexOf('|');
+		String selection = pipe < 0 ? expression : expression.substring(0, pipe);
+		String transformations = pipe < 0 ? "" : expression.substring(pipe);
+		
+		Output output = Output.OWN_TEXT;
+		String attribute = null;
+		int outputStart = selection.indexOf("::");
+		if (outputStart >= 0) {
+			String spec = selection.substring(outputStart).trim();
+			selection = selection.substring(0, outputStart);
+			if (spec.equals(TEXT)) {
+				output = Output.TEXT;
+			}
+			else if (spec.startsWith(ATTRIBUTE) && spec.endsWith(")")) {
+				output = Output.ATTRIBUTE;
+				attribute = spec.substring(ATTRIBUTE.length(), spec.length() - 1).trim()
+						.toLowerCase(Locale.ENGLISH);
+			}
+			else {
+				throw new IllegalArgumentException("Unsupported output: " + spec);
+			}
+		}
+		
+		Assignment assignment = null;
+		if (key != null) {
+			assignment = Assignment.parse(key + transformations);
+		}
+		else if (!transformations.isEmpty()) {
+			throw new IllegalArgumentException("Transformations are not supported here: " + expression);
+		}
+		
+		return new ValueRule(Collections.unmodifiableList(Selector.parseList(selection)),
+				output, attribute, assignment);
+	}
+
+	public List<Selector> getSelectors() {
+		return selectors;
+	}
+
+	public Output getOutput() {
+		return output;
+	}
+
+	/**
+	 * @return the attribute value of an element matched by a rule with
+	 * {@link Output#ATTRIBUTE}
+	 */
+	public String getAttribute(HtmlElement element) {
+		return element.getAttribute(attribute);
+	}
+
+	/**
+	 * @return the assignment or null if the rule selects a plain value
+	 */
+	public Assignment getAssignment() {
+		return assignment;
+	}
+
+	@Override
+	public String toString() {
+		return selectors + " " + output + " " + assignment;
+	}
+
+}
@@ -0,0 +1,350 @@
+/**
+ * Copyright (C) 2015 Matthes Rieke
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.matthesrieke.realty.storage;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import org.joda.time.DateTime;
+
+import com.github.matthesrieke.realty.Ad;
+import com.github.matthesrieke.realty.Ad.PropertyKeys;
+import com.github.matthesrieke.realty.SourceFragment;
+
+/**
+ * A compact binary encoding of {@link Ad}, version 1:
+ * 
+ * <pre>
+ * magic (0xA5), version, flags
+ * body, deflated if flags has COMPRESSED:
+ *   id, crawl time (epoch millis), property count,
+ *   property count x (key index, value), feature count,
+ *   feature count x value, source
+ * </pre>
+ * 
+ * Numbers are unsigned variable length integers of 7 bit groups. A value
+ * is a number tag: 0 is null, an odd tag is a code of the
+ * {@link ValueDictionary} (tag &gt;&gt; 1), an even tag is followed by
+ * tag / 2 - 1 bytes of UTF-8. ID and DATETIME are derived from the id
+ * and crawl time and not written.
+ * <p>
+ * Java serialization starts with 0xAC, which tells the formats apart.
+ */
+public class AdCodec {
+
+	public static final int VERSION = 1;
+
+	private static final byte MAGIC = (byte) 0xA5;
+	private static final int COMPRESSED = 1;
+
+	/**
+	 * the key of a key index of version 1
+	 */
+	private static final PropertyKeys[] KEYS_V1 = {PropertyKeys.LOCATION,
+			PropertyKeys.SPACE, PropertyKeys.ROOMS, PropertyKeys.PRICE,
+			PropertyKeys.FEATURES, PropertyKeys.AVAILABLE_FROM,
+			PropertyKeys.SELLER_TYPE, PropertyKeys.IMAGE, PropertyKeys.DATETIME,
+			PropertyKeys.ID, PropertyKeys.DESCRIPTION, PropertyKeys.PROVIDER};
+
+	private static final int[] KEY_INDICES = new int[PropertyKeys.values().length];
+
+	/**
+	 * smaller bodies do not gain from compression
+	 */
+	private static final int MIN_COMPRESSED_LENGTH = 256;
+
+	static {
+		for (int i = 0; i < KEYS_V1.length; i++) {
+			KEY_INDICES[KEYS_V1[i].ordinal()] = i;
+		}
+	}
+
+	private final ValueDictionary dictionary;
+	private final boolean compress;
+
+	/**
+	 * @param dictionary provides the codes of values, it is not changed
+	 * @param compress if larger bodies are deflated
+	 */
+	public AdCodec(ValueDictionary dictionary, boolean compress) {
+		this.dictionary = dictionary;
+		this.compress = compress;
+	}
+
+	/**
+	 * @return true if the data is written by the codec
+	 */
+	public static boolean isEncoded(byte[] data) {
+		return data != null && data.length > 2 && data[0] == MAGIC;
+	}
+
+	public byte[] encode(Ad ad) {
+		Output body = new Output();
+		body.writeString(ad.getId());
+		body.writeLong(ad.getDateTime().getMillis());
+		
+		int count = 0;
+		for (Map.Entry<PropertyKeys, String> property : ad.getProperties().entrySet()) {
+			if (isWritten(property.getKey())) {
+				count++;
+			}
+		}
+		body.writeInt(count);
+		for (Map.Entry<PropertyKeys, String> property : ad.getProperties().entrySet()) {
+			if (isWritten(property.getKey())) {
+				body.writeInt(KEY_INDICES[property.getKey().ordinal()]);
+				writeValue(body, property.getValue());
+			}
+		}
+		
+		List<String> features = ad.getFeatureList();
+		body.writeInt(features == null ? 0 : features.size());
+		if (features != null) {
+			for (String feature : features) {
+				writeValue(body, feature);
+			}
+		}
+		
+		SourceFragment source = ad.getSource();
+		body.writeString(source == null ? null : source.toString());
+		
+		byte[] content = body.toByteArray();
+		int flags = 0;
+		if (compress && content.length >= MIN_COMPRESSED_LENGTH) {
+			content = deflate(content);
+			flags |= COMPRESSED;
+		}
+		
+		byte[] result = new byte[content.length + 3];
+		result[0] = MAGIC;
+		result[1] = VERSION;
+		result[2] = (byte) flags;
+		System.arraycopy(content, 0, result, 3, content.length);
+		return result;
+	}
+
+	private static boolean isWritten(PropertyKeys key) {
+		return key != PropertyKeys.ID && key != PropertyKeys.DATETIME
+				&& key != PropertyKeys.FEATURES;
+	}
+
+	private void writeValue(Output out, String value) {
+		int code = value == null ? -1 : dictionary.lookup(value);
+		if (code >= 0) {
+			out.writeInt((code << 1) | 1);
+		}
+		else {
+			out.writeString(value);
+		}
+	}
+
+	/**
+	 * @throws IOException if the data is not a valid encoding of a known
+	 * version
+	 */
+	public Ad decode(byte[] data) throws IOException {
+		if (!isEncoded(data)) {
+			throw new IOException("Not an encoded ad");
+		}
+		if (data[1] != VERSION) {
+			throw new IOException("Unsupported ad encoding version " + data[1]);
+		}
+		
+		Input in;
+		if ((data[2] & COMPRESSED) != 0) {
+			byte[] body = inflate(data, 3);
+			in = new Input(body, 0);
+		}
+		else {
+			in = new Input(data, 3);
+		}
+		
+		try {
+			Ad result = Ad.forId(in.readString());
+			result.setDateTime(new DateTime(in.readLong()));
+			
+			int count = in.readInt();
+			for (int i = 0; i < count; i++) {
+				int index = in.readInt();
+				if (index >= KEYS_V1.length) {
+					throw new IOException("Unknown property index " + index);
+				}
+				result.putProperty(KEYS_V1[index], readValue(in));
+			}
+			
+			count = in.readInt();
+			List<String> features = new ArrayList<>(count);
+			for (int i = 0; i < count; i++) {
+				features.add(readValue(in));
+			}
+			result.setFeatureList(features);
+			
+			String source = in.readString();
+			if (source != null) {
+				result.setSource(SourceFragment.of(source));
+			}
+			return result;
+		} catch (ArrayIndexOutOfBoundsException e) {
+			throw new IOException("Truncated ad encoding", e);
+		}
+	}
+
+	private String readValue(Input in) throws IOException {
+		int tag = in.readInt();
+		if ((tag & 1) == 0) {
+			return in.readString(tag);
+		}
+		try {
+			return dictionary.decode(tag >>> 1);
+		} catch (IndexOutOfBoundsException e) {
+			throw new IOException("Unknown dictionary code " + (tag >>> 1), e);
+		}
+	}
+
+	private static byte[] deflate(byte[] content) {
+		Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+		try {
+			deflater.setInput(content);
+			deflater.finish();
+			ByteArrayOutputStream result = new ByteArrayOutputStream(content.length);
+			byte[] buffer = new byte[1024];
+			while (!deflater.finished()) {
+				int length = deflater.deflate(buffer);
+				result.write(buffer, 0, length);
+			}
+			return result.toByteArray();
+		} finally {
+			deflater.end();
+		}
+	}
+
+	private static byte[] inflate(byte[] data, int offset) throws IOException {
+		Inflater inflater = new Inflater();
+		try {
+			inflater.setInput(data, offset, data.length - offset);
+			ByteArrayOutputStream result = new ByteArrayOutputStream(data.length * 4);
+			byte[] buffer = new byte[1024];
+			while (!inflater.finished()) {
+				int length = inflater.inflate(buffer);
+				if (length == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+					throw new IOException("Truncated compressed ad encoding");
+				}
+				result.write(buffer, 0, length);
+			}
+			return result.toByteArray();
+		} catch (DataFormatException e) {
+			throw new IOException(e);
+		} finally {
+			inflater.end();
+		}
+	}
+
+	private static class Output extends ByteArrayOutputStream {
+
+		Output() {
+			super(256);
+		}
+
+		void writeInt(int value) {
+			writeLong(value & 0xFFFFFFFFL);
+		}
+
+		void writeLong(long value) {
+			while ((value & ~0x7FL) != 0) {
+				write((int) ((value & 0x7F) | 0x80));
+				value >>>= 7;
+			}
+			write((int) value);
+		}
+
+		/**
+		 * @param value written with an even tag, null as 0
+		 */
+		void writeString(String value) {
+			if (value == null) {
+				writeInt(0);
+				return;
+			}
+			byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+			writeInt((bytes.length + 1) << 1);
+			write(bytes, 0, bytes.length);
+		}
+
+	}
+
+	private static class Input {
+
+		private final byte[] data;
+		private int position;
+
+		Input(byte[] data, int position) {
+			this.data = data;
+			this.position = position;
+		}
+
+		int readInt() throws IOException {
+			long result = readLong();
+			if (result > Integer.MAX_VALUE) {
+				throw new IOException("Invalid number in ad encoding");
+			}
+			return (int) result;
+		}
+
+		long readLong() throws IOException {
+			long result = 0;
+			for (int shift = 0; shift < 64; shift += 7) {
+				byte b = data[position++];
+				result |= (long) (b & 0x7F) << shift;
+				if ((b & 0x80) == 0) {
+					return result;
+				}
+			}
+			throw new IOException("Invalid number in ad encoding");
+		}
+
+		String readString() throws IOException {
+			return readString(readInt());
+		}
+
+		/**
+		 * @param tag the tag of the string, already read
+		 */
+		String readString(int tag) throws IOException {
+			if (tag == 0) {
+				return null;
+			}
+			if ((tag & 1) != 0) {
+				throw new IOException("Invalid string in ad encoding");
+			}
+			int length = (tag >>> 1) - 1;
+			if (length < 0 || position + length > data.length) {
+				throw new IOException("Invalid string in ad encoding");
+			}
+			String result = new String(data, position, length, StandardCharsets.UTF_8);
+			position += length;
+			return result;
+		}
+
+	}
+
+}
@@ -0,0 +1,59 @@
+/**
+ * Copyright (C) 2015 Matthes Rieke
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.matthesrieke.realty.storage;
+
+/**
+ * The progress of a base link within a {@link CrawlRun}: the page to
+ * continue with and the number of consecutive pages with known ads only.
+ */
+public class CrawlCheckpoint {
+
+	private final long runId;
+	private final String baseLink;
+	private final int nextPage;
+	private final int knownPages;
+	private final boolean finished;
+
+	public CrawlCheckpoint(long runId, String baseLink, int nextPage,
+			int knownPages, boolean finished) {
+		this.runId = runId;
+		this.baseLink = baseLink;
+		this.nextPage = nextPage;
+		this.knownPages = knownPages;
+		this.finished = finished;
+	}
+
+	public long getRunId() {
+		return runId;
+	}
+
+	public String getBaseLink() {
+		return baseLink;
+	}
+
+	public int getNextPage() {
+		return nextPage;
+	}
+
+	public int getKnownPages() {
+		return knownPages;
+	}
+
+	public boolean isFinished() {
+		return finished;
+	}
+
+}
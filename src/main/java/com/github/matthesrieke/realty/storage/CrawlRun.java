@@ -0,0 +1,103 @@
+/**
+ * Copyright (C) 2015 Matthes Rieke
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.matthesrieke.realty.storage;
+
+import org.joda.time.DateTime;
+
+/**
+ * A single crawl run. A run that is still {@link State#RUNNING} when the
+ * application starts has been aborted and is resumed from its checkpoints,
+ * unless it is too old and thus {@link State#ABANDONED}.
+ */
+public class CrawlRun {
+
+	public enum State {
+		RUNNING, INTERRUPTED, FINISHED, ABANDONED
+	}
+
+	private final long id;
+	private final DateTime startTime;
+	private final boolean fullCrawl;
+	private DateTime endTime;
+	private State state;
+	private int insertedCount;
+
+	public CrawlRun(long id, DateTime startTime, boolean fullCrawl) {
+		this.id = id;
+		this.startTime = startTime;
+		this.fullCrawl = fullCrawl;
+		this.state = State.RUNNING;
+	}
+
+	public long getId() {
+		return id;
+	}
+
+	public DateTime getStartTime() {
+		return startTime;
+	}
+
+	public boolean isFullCrawl() {
+		return fullCrawl;
+	}
+
+	public DateTime getEndTime() {
+		return endTime;
+	}
+
+	public void setEndTime(DateTime endTime) {
+		this.endTime = endTime;
+	}
+
+	public State getState() {
+		return state;
+	}
+
+	public void setState(State state) {
+		this.state = state;
+	}
+
+	public int getInsertedCount() {
+		return insertedCount;
+	}
+
+	public void setInsertedCount(int insertedCount) {
+		this.insertedCount = insertedCount;
+	}
+
+	/**
+	 * @return true if the run did not finish and can be resumed
+	 */
+	public boolean isResumable() {
+		return state == State.RUNNING || state == State.INTERRUPTED;
+	}
+
+	/**
+	 * @param maxAgeMillis the maximum age of a resumable run
+	 * @return true if the run did not finish and started less than
+	 * maxAgeMillis ago
+	 */
+	public boolean isResumable(long maxAgeMillis) {
+		return isResumable() && startTime.plus(maxAgeMillis).isAfterNow();
+	}
+
+	@Override
+	public String toString() {
+		return String.format("CrawlRun [id=%s, startTime=%s, fullCrawl=%s, state=%s]",
+				id, startTime, fullCrawl, state);
+	}
+
+}
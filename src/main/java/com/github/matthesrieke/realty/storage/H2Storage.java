@@ -15,9 +15,9 @@
  */
 package com.github.matthesrieke.realty.storage;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
 import java.sql.Connection;
 import java.sql.DatabaseMetaData;
 import java.sql.DriverManager;
@@ -36,6 +36,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.github.matthesrieke.realty.Ad;
+import com.github.matthesrieke.realty.Ad.PropertyKeys;
 import com.github.matthesrieke.realty.Util;
 
 public class H2Storage implements Storage {
@@ -57,11 +58,57 @@ public class H2Storage implements Storage {
 	private static final String META_DATA_COLUMN_TYPE = "VARCHAR(1024)";
 	private static final String META_ID_COLUMN = "ID";
 
+	private static final String PAGE_TABLE_NAME = "PAGES";
+	private static final String PAGE_URL_COLUMN = "URL";
+	private static final String PAGE_ETAG_COLUMN = "ETAG";
+	private static final String PAGE_LAST_MODIFIED_COLUMN = "LAST_MODIFIED";
+	private static final String PAGE_AD_IDS_COLUMN = "AD_IDS";
+	private static final String PAGE_TIMESTAMP_COLUMN = "TIME";
+	private static final String AD_ID_SEPARATOR = "\n";
+
+	private static final String RUN_TABLE_NAME = "CRAWL_RUNS";
+	private static final String RUN_ID_COLUMN = "ID";
+	private static final String RUN_START_COLUMN = "START_TIME";
+	private static final String RUN_END_COLUMN = "END_TIME";
+	private static final String RUN_FULL_COLUMN = "FULL_CRAWL";
+	private static final String RUN_STATE_COLUMN = "STATE";
+	private static final String RUN_INSERTED_COLUMN = "INSERTED";
+
+	private static final String CHECKPOINT_TABLE_NAME = "CRAWL_CHECKPOINTS";
+	private static final String CHECKPOINT_RUN_COLUMN = "RUN_ID";
+	private static final String CHECKPOINT_LINK_COLUMN = "BASE_LINK";
+	private static final String CHECKPOINT_PAGE_COLUMN = "NEXT_PAGE";
+	private static final String CHECKPOINT_KNOWN_COLUMN = "KNOWN_PAGES";
+	private static final String CHECKPOINT_FINISHED_COLUMN = "FINISHED";
+	private static final String CHECKPOINT_TIMESTAMP_COLUMN = "TIME";
+
+	private static final String DICTIONARY_TABLE_NAME = "DICTIONARY";
+	private static final String DICTIONARY_CODE_COLUMN = "CODE";
+	private static final String DICTIONARY_VALUE_COLUMN = "VAL";
+	private static final String DICTIONARY_KEY_COLUMN = "PROPERTY";
+
+	private static final String SCHEMA_TABLE_NAME = "SCHEMA_VERSIONS";
+	private static final String SCHEMA_NAME_COLUMN = "NAME";
+	private static final String SCHEMA_VERSION_COLUMN = "VERSION";
+	private static final String AD_ENCODING_SCHEMA = "AD_ENCODING";
+
 	private Connection connection;
 	private String preferredDatabaseLocation;
+	private ValueDictionary dictionary;
+	private int storedDictionarySize;
+	private AdCodec codec;
+	private final boolean compress;
 
 	public H2Storage(String preferredDatabaseLocation) {
+		this(preferredDatabaseLocation, false);
+	}
+
+	/**
+	 * @param compress if the encoded ads are compressed
+	 */
+	public H2Storage(String preferredDatabaseLocation, boolean compress) {
 		this.preferredDatabaseLocation = preferredDatabaseLocation;
+		this.compress = compress;
 		try {
 			initialize(new File(getClass().getResource("/").getFile()));
 		} catch (Exception e) {
@@ -71,7 +118,7 @@ public class H2Storage implements Storage {
 	}
 
 	@Override
-	public List<Ad> storeItemsAndProvideNew(List<Ad> items) {
+	public synchronized List<Ad> storeItemsAndProvideNew(List<Ad> items) {
 		List<Ad> result = new ArrayList<>();
 		
 		for (Ad key : items) {
@@ -96,18 +143,19 @@ public class H2Storage implements Storage {
 			
 			logger.debug("Persisting item: " + ad);
 			
+			this.dictionary.intern(ad);
+			storeDictionaryValues();
+			
 			PreparedStatement prep = this.connection
 					.prepareStatement("insert into " + TABLE_NAME + " ("
 							+ ID_COLUMN + ", " + TIMESTAMP_COLUMN
 							+ ", " + DATA_COLUMN + ") values (?,?,?)");
 			prep.setString(1, key);
 			prep.setTimestamp(2, new Timestamp(ad.getDateTime().toDate().getTime()));
-			prep.setBytes(3, Util.serialize(ad));
+			prep.setBytes(3, this.codec.encode(ad));
 			prep.execute();
 		} catch (SQLException e) {
 			logger.warn("could not serialize ad " + ad, e);
-		} catch (IOException e) {
-			logger.warn("could not serialize ad " + ad, e);
 		}
 		return false;		
 	}
@@ -150,6 +198,15 @@ public class H2Storage implements Storage {
 		this.connection.setAutoCommit(true);
 
 		validateTables();
+		
+		this.dictionary = loadDictionary();
+		this.storedDictionarySize = this.dictionary.size();
+		this.codec = new AdCodec(this.dictionary, this.compress);
+		
+		if (getSchemaVersion(AD_ENCODING_SCHEMA) < AdCodec.VERSION) {
+			migrateSerializedAds();
+			storeSchemaVersion(AD_ENCODING_SCHEMA, AdCodec.VERSION);
+		}
 	}
 
 
@@ -166,7 +223,172 @@ public class H2Storage implements Storage {
 		} catch (IllegalStateException e) {
 			logger.warn("database in an illegal state", e.getMessage());
 			createMetadataTable();
-		}		
+		}
+
+		try {
+			validatePageTable();
+		} catch (IllegalStateException e) {
+			logger.warn("database in an illegal state", e.getMessage());
+			createPageTable();
+		}
+
+		if (!tableExists(RUN_TABLE_NAME)) {
+			createRunTables();
+		}
+
+		if (!tableExists(SCHEMA_TABLE_NAME)) {
+			createSchemaTable();
+		}
+
+		if (!tableExists(DICTIONARY_TABLE_NAME)) {
+			createDictionaryTable();
+		}
+		else {
+			Statement stmt = this.connection.createStatement();
+			stmt.execute("ALTER TABLE " + DICTIONARY_TABLE_NAME + " ADD COLUMN IF NOT EXISTS "
+					+ DICTIONARY_KEY_COLUMN + " VARCHAR(32)");
+			stmt.close();
+		}
+	}
+
+	/**
+	 * the versions of the stored formats, a format without a row has not
+	 * been migrated
+	 */
+	private void createSchemaTable() throws SQLException {
+		Statement stmt = this.connection.createStatement();
+		stmt.execute("CREATE TABLE " + SCHEMA_TABLE_NAME + "("
+				+ SCHEMA_NAME_COLUMN + " VARCHAR(64) PRIMARY KEY, "
+				+ SCHEMA_VERSION_COLUMN + " INT)");
+		stmt.close();
+	}
+
+	/**
+	 * @return the version of the format, 0 if it has not been stored
+	 */
+	private int getSchemaVersion(String name) throws SQLException {
+		PreparedStatement prep = this.connection.prepareStatement("SELECT "
+				+ SCHEMA_VERSION_COLUMN + " from " + SCHEMA_TABLE_NAME + " where "
+				+ SCHEMA_NAME_COLUMN + " = ?");
+		prep.setString(1, name);
+		ResultSet rs = prep.executeQuery();
+		int result = rs.next() ? rs.getInt(1) : 0;
+		prep.close();
+		return result;
+	}
+
+	private void storeSchemaVersion(String name, int version) throws SQLException {
+		PreparedStatement prep = this.connection.prepareStatement("MERGE INTO "
+				+ SCHEMA_TABLE_NAME + " (" + SCHEMA_NAME_COLUMN + ", "
+				+ SCHEMA_VERSION_COLUMN + ") KEY (" + SCHEMA_NAME_COLUMN
+				+ ") values (?,?)");
+		prep.setString(1, name);
+		prep.setInt(2, version);
+		prep.execute();
+		prep.close();
+	}
+
+	/**
+	 * the ads refer to the codes, the table is never dropped with a
+	 * valid data table
+	 */
+	private void createDictionaryTable() throws SQLException {
+		Statement stmt = this.connection.createStatement();
+		stmt.execute("CREATE TABLE " + DICTIONARY_TABLE_NAME + "("
+				+ DICTIONARY_CODE_COLUMN + " INT PRIMARY KEY, "
+				+ DICTIONARY_VALUE_COLUMN + " VARCHAR(1024), "
+				+ DICTIONARY_KEY_COLUMN + " VARCHAR(32))");
+		stmt.close();
+	}
+
+	private ValueDictionary loadDictionary() throws SQLException {
+		Statement stmt = this.connection.createStatement();
+		ResultSet rs = stmt.executeQuery("SELECT " + DICTIONARY_CODE_COLUMN + ", "
+				+ DICTIONARY_VALUE_COLUMN + ", " + DICTIONARY_KEY_COLUMN + " from "
+				+ DICTIONARY_TABLE_NAME + " ORDER BY " + DICTIONARY_CODE_COLUMN);
+		ValueDictionary result = new ValueDictionary();
+		while (rs.next()) {
+			if (rs.getInt(1) != result.size()) {
+				stmt.close();
+				throw new IllegalStateException("Dictionary codes are not contiguous at " + result.size());
+			}
+			String key = rs.getString(3);
+			result.restore(key == null ? null : PropertyKeys.valueOf(key), rs.getString(2));
+		}
+		stmt.close();
+		return result;
+	}
+
+	/**
+	 * stores the values added to the dictionary since the last call, the
+	 * values have to be stored before the ads referring to them
+	 */
+	private void storeDictionaryValues() throws SQLException {
+		int from = this.storedDictionarySize;
+		int to = this.dictionary.size();
+		if (from == to) {
+			return;
+		}
+		PreparedStatement prep = this.connection.prepareStatement("MERGE INTO "
+				+ DICTIONARY_TABLE_NAME + " (" + DICTIONARY_CODE_COLUMN + ", "
+				+ DICTIONARY_VALUE_COLUMN + ", " + DICTIONARY_KEY_COLUMN + ") KEY ("
+				+ DICTIONARY_CODE_COLUMN + ") values (?,?,?)");
+		for (int code = from; code < to; code++) {
+			PropertyKeys key = this.dictionary.keyOf(code);
+			prep.setInt(1, code);
+			prep.setString(2, this.dictionary.decode(code));
+			prep.setString(3, key == null ? null : key.name());
+			prep.addBatch();
+		}
+		prep.executeBatch();
+		prep.close();
+		this.storedDictionarySize = to;
+	}
+
+	private boolean tableExists(String name) throws SQLException {
+		DatabaseMetaData md = this.connection.getMetaData();
+		ResultSet rs = md.getTables(null, null, name, null);
+		boolean exists = rs.next();
+		rs.close();
+		return exists;
+	}
+
+	private void createRunTables() throws SQLException {
+		Statement stmt = this.connection.createStatement();
+		stmt.execute("CREATE TABLE " + RUN_TABLE_NAME + "(" + RUN_ID_COLUMN
+				+ " bigint auto_increment PRIMARY KEY, " + RUN_START_COLUMN + " "
+				+ TIMESTAMP_COLUMN_TYPE + ", " + RUN_END_COLUMN + " "
+				+ TIMESTAMP_COLUMN_TYPE + ", " + RUN_FULL_COLUMN + " BOOLEAN, "
+				+ RUN_STATE_COLUMN + " VARCHAR(32), " + RUN_INSERTED_COLUMN + " INT)");
+		stmt.execute("DROP TABLE IF EXISTS " + CHECKPOINT_TABLE_NAME);
+		stmt.execute("CREATE TABLE " + CHECKPOINT_TABLE_NAME + "("
+				+ CHECKPOINT_RUN_COLUMN + " bigint, " + CHECKPOINT_LINK_COLUMN
+				+ " VARCHAR(4096), " + CHECKPOINT_PAGE_COLUMN + " INT, "
+				+ CHECKPOINT_KNOWN_COLUMN + " INT, " + CHECKPOINT_FINISHED_COLUMN
+				+ " BOOLEAN, " + CHECKPOINT_TIMESTAMP_COLUMN + " "
+				+ TIMESTAMP_COLUMN_TYPE + ", PRIMARY KEY (" + CHECKPOINT_RUN_COLUMN
+				+ ", " + CHECKPOINT_LINK_COLUMN + "))");
+		stmt.close();
+	}
+
+	private void createPageTable() throws SQLException {
+		Statement stmt = this.connection.createStatement();
+		stmt.execute("CREATE TABLE " + PAGE_TABLE_NAME + "(" + PAGE_URL_COLUMN
+				+ " VARCHAR(4096) PRIMARY KEY, " + PAGE_ETAG_COLUMN
+				+ " VARCHAR(1024), " + PAGE_LAST_MODIFIED_COLUMN
+				+ " VARCHAR(256), " + PAGE_AD_IDS_COLUMN + " CLOB, "
+				+ PAGE_TIMESTAMP_COLUMN + " " + TIMESTAMP_COLUMN_TYPE + ")");
+		stmt.close();
+	}
+
+	private void validatePageTable() throws SQLException {
+		DatabaseMetaData md = this.connection.getMetaData();
+		ResultSet rs = md.getTables(null, null, PAGE_TABLE_NAME, null);
+		boolean exists = rs.next();
+		rs.close();
+		if (!exists) {
+			throw new IllegalStateException(PAGE_TABLE_NAME + " not found.");
+		}
 	}
 
 	private void createMetadataTable() throws SQLException {
@@ -298,9 +520,9 @@ public class H2Storage implements Storage {
 			List<Ad> result = new ArrayList<>();
 			while (rs.next()) {
 				String id = rs.getString(ID_COLUMN);
-				InputStream data = rs.getBinaryStream(DATA_COLUMN);
+				byte[] data = rs.getBytes(DATA_COLUMN);
 				if (id != null && data != null) {
-					result.add(Util.deserialize(data, Ad.class));
+					result.add(decode(data));
 				}
 			}
 			stmt.close();
@@ -313,6 +535,53 @@ public class H2Storage implements Storage {
 		
 	}
 	
+	/**
+	 * @param data an encoded ad or, if not migrated yet, a serialized one
+	 */
+	private Ad decode(byte[] data) throws IOException {
+		if (AdCodec.isEncoded(data)) {
+			return this.codec.decode(data);
+		}
+		return Util.deserialize(new ByteArrayInputStream(data), Ad.class);
+	}
+
+	/**
+	 * re-encodes the ads stored with Java serialization, once per
+	 * database. A row which cannot be read is kept as it is
+	 */
+	private void migrateSerializedAds() throws SQLException {
+		Statement stmt = this.connection.createStatement();
+		ResultSet rs = stmt.executeQuery("SELECT " + ID_COLUMN + ", " + DATA_COLUMN
+				+ " from " + TABLE_NAME);
+		PreparedStatement update = this.connection.prepareStatement("UPDATE "
+				+ TABLE_NAME + " SET " + DATA_COLUMN + " = ? where " + ID_COLUMN + " = ?");
+		int migrated = 0;
+		while (rs.next()) {
+			byte[] data = rs.getBytes(2);
+			if (data == null || AdCodec.isEncoded(data)) {
+				continue;
+			}
+			try {
+				Ad ad = Util.deserialize(new ByteArrayInputStream(data), Ad.class);
+				this.dictionary.intern(ad);
+				storeDictionaryValues();
+				update.setBytes(1, this.codec.encode(ad));
+				update.setString(2, rs.getString(1));
+				update.execute();
+				migrated++;
+			} catch (IOException e) {
+				logger.warn("Could not migrate ad " + rs.getString(1), e);
+			}
+		}
+		update.close();
+		stmt.close();
+		
+		if (migrated > 0) {
+			logger.info(String.format("Re-encoded %s ads with ad codec version %s.",
+					migrated, AdCodec.VERSION));
+		}
+	}
+
 	@Override
 	public Map<DateTime, List<Ad>> getItemsGroupedByDate() throws IOException {
 		Map<DateTime, List<Ad>> result = new HashMap<>();
@@ -340,7 +609,7 @@ public class H2Storage implements Storage {
 	}
 
 	@Override
-	public void updateMetadata(Metadata md) {
+	public synchronized void updateMetadata(Metadata md) {
 		logger.debug("Updating metadata: " + md);
 		
 		PreparedStatement prep;
@@ -385,4 +654,224 @@ public class H2Storage implements Storage {
 		}
 	}
 
+	@Override
+	public PageValidator getPageValidator(String url) throws IOException {
+		try {
+			PreparedStatement prep = this.connection
+					.prepareStatement("SELECT * from " + PAGE_TABLE_NAME
+							+ " where " + PAGE_URL_COLUMN + " = ?");
+			prep.setString(1, url);
+			ResultSet rs = prep.executeQuery();
+			
+			PageValidator result = null;
+			if (rs.next()) {
+				List<String> ids = new ArrayList<>();
+				String idString = rs.getString(PAGE_AD_IDS_COLUMN);
+				if (idString != null && !idString.isEmpty()) {
+					for (String id : idString.split(AD_ID_SEPARATOR)) {
+						ids.add(id);
+					}
+				}
+				result = new PageValidator(url, rs.getString(PAGE_ETAG_COLUMN),
+						rs.getString(PAGE_LAST_MODIFIED_COLUMN), ids);
+			}
+			prep.close();
+			
+			return result;
+		} catch (SQLException e) {
+			logger.warn("Error retrieving page validator", e);
+			throw new IOException(e);
+		}
+	}
+
+	@Override
+	public synchronized void storePageValidator(PageValidator validator) {
+		StringBuilder ids = new StringBuilder();
+		for (String id : validator.getAdIds()) {
+			if (ids.length() > 0) {
+				ids.append(AD_ID_SEPARATOR);
+			}
+			ids.append(id);
+		}
+		
+		try {
+			PreparedStatement prep = this.connection
+					.prepareStatement("MERGE INTO " + PAGE_TABLE_NAME + " ("
+							+ PAGE_URL_COLUMN + ", " + PAGE_ETAG_COLUMN + ", "
+							+ PAGE_LAST_MODIFIED_COLUMN + ", " + PAGE_AD_IDS_COLUMN
+							+ ", " + PAGE_TIMESTAMP_COLUMN + ") KEY (" + PAGE_URL_COLUMN
+							+ ") values (?,?,?,?,?)");
+			prep.setString(1, validator.getUrl());
+			prep.setString(2, validator.getEtag());
+			prep.setString(3, validator.getLastModified());
+			prep.setString(4, ids.toString());
+			prep.setTimestamp(5, new Timestamp(System.currentTimeMillis()));
+			prep.execute();
+			prep.close();
+		} catch (SQLException e) {
+			logger.warn("Could not store page validator for " + validator.getUrl(), e);
+		}
+	}
+
+	@Override
+	public synchronized CrawlRun startCrawlRun(DateTime startTime, boolean fullCrawl)
+			throws IOException {
+		try {
+			PreparedStatement prep = this.connection
+					.prepareStatement("insert into " + RUN_TABLE_NAME + " ("
+							+ RUN_START_COLUMN + ", " + RUN_FULL_COLUMN + ", "
+							+ RUN_STATE_COLUMN + ", " + RUN_INSERTED_COLUMN
+							+ ") values (?,?,?,?)", Statement.RETURN_GENERATED_KEYS);
+			prep.setTimestamp(1, new Timestamp(startTime.getMillis()));
+			prep.setBoolean(2, fullCrawl);
+			prep.setString(3, CrawlRun.State.RUNNING.name());
+			prep.setInt(4, 0);
+			prep.execute();
+			
+			ResultSet keys = prep.getGeneratedKeys();
+			if (!keys.next()) {
+				throw new IOException("No id generated for crawl run");
+			}
+			CrawlRun result = new CrawlRun(keys.getLong(1), startTime, fullCrawl);
+			prep.close();
+			
+			return result;
+		} catch (SQLException e) {
+			logger.warn("Could not store crawl run", e);
+			throw new IOException(e);
+		}
+	}
+
+	@Override
+	public synchronized void updateCrawlRun(CrawlRun run) {
+		try {
+			PreparedStatement prep = this.connection
+					.prepareStatement("update " + RUN_TABLE_NAME + " set "
+							+ RUN_END_COLUMN + " = ?, " + RUN_STATE_COLUMN + " = ?, "
+							+ RUN_INSERTED_COLUMN + " = ? where " + RUN_ID_COLUMN + " = ?");
+			prep.setTimestamp(1, run.getEndTime() == null ? null
+					: new Timestamp(run.getEndTime().getMillis()));
+			prep.setString(2, run.getState().name());
+			prep.setInt(3, run.getInsertedCount());
+			prep.setLong(4, run.getId());
+			prep.execute();
+			prep.close();
+			
+			if (!run.isResumable()) {
+				/*
+				 * a finished or abandoned run is never resumed
+				 */
+				prep = this.connection.prepareStatement("delete from "
+						+ CHECKPOINT_TABLE_NAME + " where " + CHECKPOINT_RUN_COLUMN + " <= ?");
+				prep.setLong(1, run.getId());
+				prep.execute();
+				prep.close();
+			}
+		} catch (SQLException e) {
+			logger.warn("Could not update crawl run " + run, e);
+		}
+	}
+
+	@Override
+	public CrawlRun getLatestCrawlRun() throws IOException {
+		return queryLatestCrawlRun("SELECT * from " + RUN_TABLE_NAME
+				+ " ORDER BY " + RUN_ID_COLUMN + " DESC LIMIT 1");
+	}
+
+	@Override
+	public CrawlRun getLatestFinishedCrawlRun(boolean fullCrawl) throws IOException {
+		StringBuilder sb = new StringBuilder();
+		sb.append("SELECT * from ");
+		sb.append(RUN_TABLE_NAME);
+		sb.append(" where ");
+		sb.append(RUN_STATE_COLUMN);
+		sb.append(" = '");
+		sb.append(CrawlRun.State.FINISHED.name());
+		sb.append("'");
+		if (fullCrawl) {
+			sb.append(" and ");
+			sb.append(RUN_FULL_COLUMN);
+			sb.append(" = TRUE");
+		}
+		sb.append(" ORDER BY ");
+		sb.append(RUN_ID_COLUMN);
+		sb.append(" DESC LIMIT 1");
+		return queryLatestCrawlRun(sb.toString());
+	}
+
+	private CrawlRun queryLatestCrawlRun(String query) throws IOException {
+		try {
+			Statement stmt = this.connection.createStatement();
+			ResultSet rs = stmt.executeQuery(query);
+			
+			CrawlRun result = null;
+			if (rs.next()) {
+				result = new CrawlRun(rs.getLong(RUN_ID_COLUMN),
+						new DateTime(rs.getTimestamp(RUN_START_COLUMN)),
+						rs.getBoolean(RUN_FULL_COLUMN));
+				Timestamp end = rs.getTimestamp(RUN_END_COLUMN);
+				if (end != null) {
+					result.setEndTime(new DateTime(end));
+				}
+				result.setState(CrawlRun.State.valueOf(rs.getString(RUN_STATE_COLUMN)));
+				result.setInsertedCount(rs.getInt(RUN_INSERTED_COLUMN));
+			}
+			stmt.close();
+			
+			return result;
+		} catch (SQLException | IllegalArgumentException e) {
+			logger.warn("Error retrieving crawl run", e);
+			throw new IOException(e);
+		}
+	}
+
+	@Override
+	public synchronized void storeCheckpoint(CrawlCheckpoint checkpoint) {
+		try {
+			PreparedStatement prep = this.connection
+					.prepareStatement("MERGE INTO " + CHECKPOINT_TABLE_NAME + " ("
+							+ CHECKPOINT_RUN_COLUMN + ", " + CHECKPOINT_LINK_COLUMN + ", "
+							+ CHECKPOINT_PAGE_COLUMN + ", " + CHECKPOINT_KNOWN_COLUMN + ", "
+							+ CHECKPOINT_FINISHED_COLUMN + ", " + CHECKPOINT_TIMESTAMP_COLUMN
+							+ ") KEY (" + CHECKPOINT_RUN_COLUMN + ", " + CHECKPOINT_LINK_COLUMN
+							+ ") values (?,?,?,?,?,?)");
+			prep.setLong(1, checkpoint.getRunId());
+			prep.setString(2, checkpoint.getBaseLink());
+			prep.setInt(3, checkpoint.getNextPage());
+			prep.setInt(4, checkpoint.getKnownPages());
+			prep.setBoolean(5, checkpoint.isFinished());
+			prep.setTimestamp(6, new Timestamp(System.currentTimeMillis()));
+			prep.execute();
+			prep.close();
+		} catch (SQLException e) {
+			logger.warn("Could not store checkpoint for " + checkpoint.getBaseLink(), e);
+		}
+	}
+
+	@Override
+	public Map<String, CrawlCheckpoint> getCheckpoints(long runId) throws IOException {
+		try {
+			PreparedStatement prep = this.connection
+					.prepareStatement("SELECT * from " + CHECKPOINT_TABLE_NAME
+							+ " where " + CHECKPOINT_RUN_COLUMN + " = ?");
+			prep.setLong(1, runId);
+			ResultSet rs = prep.executeQuery();
+			
+			Map<String, CrawlCheckpoint> result = new HashMap<>();
+			while (rs.next()) {
+				String link = rs.getString(CHECKPOINT_LINK_COLUMN);
+				result.put(link, new CrawlCheckpoint(runId, link,
+						rs.getInt(CHECKPOINT_PAGE_COLUMN),
+						rs.getInt(CHECKPOINT_KNOWN_COLUMN),
+						rs.getBoolean(CHECKPOINT_FINISHED_COLUMN)));
+			}
+			prep.close();
+			
+			return result;
+		} catch (SQLException e) {
+			logger.warn("Error retrieving checkpoints", e);
+			throw new IOException(e);
+		}
+	}
+
 }
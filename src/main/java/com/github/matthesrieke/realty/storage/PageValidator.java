@@ -0,0 +1,76 @@
+/**
+ * Copyright (C) 2015 Matthes Rieke
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.matthesrieke.realty.storage;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.github.matthesrieke.realty.Ad;
+
+/**
+ * The HTTP validators (ETag / Last-Modified) of a result page together
+ * with the ids of the ads that page contained when it was last fetched.
+ */
+public class PageValidator {
+
+	private final String url;
+	private final String etag;
+	private final String lastModified;
+	private final List<String> adIds;
+
+	public PageValidator(String url, String etag, String lastModified,
+			List<String> adIds) {
+		this.url = url;
+		this.etag = etag;
+		this.lastModified = lastModified;
+		this.adIds = adIds == null ? Collections.<String>emptyList() : adIds;
+	}
+
+	public static PageValidator forItems(String url, String etag,
+			String lastModified, List<Ad> items) {
+		List<String> ids = new ArrayList<>(items.size());
+		for (Ad ad : items) {
+			ids.add(ad.getId());
+		}
+		return new PageValidator(url, etag, lastModified, ids);
+	}
+
+	public String getUrl() {
+		return url;
+	}
+
+	public String getEtag() {
+		return etag;
+	}
+
+	public String getLastModified() {
+		return lastModified;
+	}
+
+	public List<String> getAdIds() {
+		return adIds;
+	}
+
+	/**
+	 * @return true if the server provided at least one validator
+	 */
+	public boolean isValidatable() {
+		return (etag != null && !etag.isEmpty())
+				|| (lastModified != null && !lastModified.isEmpty());
+	}
+
+}
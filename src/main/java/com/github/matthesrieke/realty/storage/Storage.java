@@ -36,5 +36,42 @@ public interface Storage {
 	void updateMetadata(Metadata md);
 	
 	List<Metadata> getLatestMetadata(int count) throws IOException;
+
+	/**
+	 * @param url the URL of a result page
+	 * @return the validators stored for that page or null if unknown
+	 */
+	PageValidator getPageValidator(String url) throws IOException;
+
+	void storePageValidator(PageValidator validator);
+
+	/**
+	 * creates a new run in state {@link CrawlRun.State#RUNNING}
+	 */
+	CrawlRun startCrawlRun(DateTime startTime, boolean fullCrawl) throws IOException;
+
+	/**
+	 * stores state, end time and inserted count of the run. The checkpoints
+	 * of a finished or abandoned run are removed.
+	 */
+	void updateCrawlRun(CrawlRun run);
+
+	/**
+	 * @return the most recently started run or null if there is none
+	 */
+	CrawlRun getLatestCrawlRun() throws IOException;
+
+	/**
+	 * @param fullCrawl if only full crawls should be considered
+	 * @return the most recently finished run or null if there is none
+	 */
+	CrawlRun getLatestFinishedCrawlRun(boolean fullCrawl) throws IOException;
+
+	void storeCheckpoint(CrawlCheckpoint checkpoint);
+
+	/**
+	 * @return the checkpoints of the run, keyed by base link
+	 */
+	Map<String, CrawlCheckpoint> getCheckpoints(long runId) throws IOException;
 	
 }
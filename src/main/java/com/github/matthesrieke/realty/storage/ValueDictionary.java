@@ -0,0 +1,183 @@
+/**
+ * Copyright (C) 2015 Matthes Rieke
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.matthesrieke.realty.storage;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Map;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.matthesrieke.realty.Ad;
+import com.github.matthesrieke.realty.Ad.PropertyKeys;
+
+/**
+ * Maps the values of small vocabularies, such as providers, locations,
+ * seller types and features, to integer codes. Ads share one instance of every value
+ * in memory and store a value as its code, see {@link AdCodec}.
+ * <p>
+ * The codes are the positions of the values, the dictionary only grows.
+ * Every key takes at most {@link #MAX_VALUES_PER_KEY} values, further
+ * values of the key are stored as text.
+ */
+public class ValueDictionary {
+
+	private static final Logger logger = LoggerFactory
+			.getLogger(ValueDictionary.class);
+
+	/**
+	 * the properties whose values are taken into the dictionary, besides
+	 * the features ({@link PropertyKeys#FEATURES})
+	 */
+	public static final Set<PropertyKeys> ENCODED_KEYS = Collections.unmodifiableSet(
+			EnumSet.of(PropertyKeys.PROVIDER, PropertyKeys.LOCATION,
+					PropertyKeys.SELLER_TYPE, PropertyKeys.AVAILABLE_FROM));
+
+	public static final int MAX_VALUES_PER_KEY = 1024;
+
+	/**
+	 * longer values are unlikely to repeat
+	 */
+	private static final int MAX_VALUE_LENGTH = 128;
+
+	private final List<String> values = new ArrayList<>();
+	private final List<PropertyKeys> keys = new ArrayList<>();
+	private final Map<String, Integer> codes = new HashMap<>();
+	private final Map<PropertyKeys, Integer> counts = new EnumMap<>(PropertyKeys.class);
+	private final Set<PropertyKeys> exhausted = EnumSet.noneOf(PropertyKeys.class);
+	private final int maxValuesPerKey;
+
+	public ValueDictionary() {
+		this(MAX_VALUES_PER_KEY);
+	}
+
+	ValueDictionary(int maxValuesPerKey) {
+		this.maxValuesPerKey = maxValuesPerKey;
+	}
+
+	/**
+	 * adds a stored value with the next code, regardless of the limit
+	 * 
+	 * @param key the key the value was added for, null if unknown
+	 */
+	public synchronized void restore(PropertyKeys key, String value) {
+		codes.put(value, values.size());
+		values.add(value);
+		keys.add(key);
+		if (key != null) {
+			counts.put(key, count(key) + 1);
+		}
+	}
+
+	/**
+	 * @return the number of values, which is the code of the next value
+	 */
+	public synchronized int size() {
+		return values.size();
+	}
+
+	/**
+	 * @return the number of values added for the key
+	 */
+	public synchronized int count(PropertyKeys key) {
+		Integer result = counts.get(key);
+		return result == null ? 0 : result;
+	}
+
+	/**
+	 * @return the value of the code
+	 * @throws IndexOutOfBoundsException if the code is unknown
+	 */
+	public synchronized String decode(int code) {
+		return values.get(code);
+	}
+
+	/**
+	 * @return the key the value of the code was added for, null if unknown
+	 * @throws IndexOutOfBoundsException if the code is unknown
+	 */
+	public synchronized PropertyKeys keyOf(int code) {
+		return keys.get(code);
+	}
+
+	/**
+	 * @return the code of the value, or -1 if it is not contained
+	 */
+	public synchronized int lookup(String value) {
+		Integer result = codes.get(value);
+		return result == null ? -1 : result;
+	}
+
+	/**
+	 * @param key the key of the value, {@link PropertyKeys#FEATURES} for
+	 * a feature
+	 * @return the instance held by the dictionary, the value is added if
+	 * it is not contained yet. Values which are too long or exceed the
+	 * limit of the key are returned as they are
+	 */
+	public synchronized String intern(PropertyKeys key, String value) {
+		if (value == null) {
+			return null;
+		}
+		Integer code = codes.get(value);
+		if (code != null) {
+			return values.get(code);
+		}
+		if (value.length() > MAX_VALUE_LENGTH) {
+			return value;
+		}
+		int count = count(key);
+		if (count >= maxValuesPerKey) {
+			if (exhausted.add(key)) {
+				logger.warn(String.format("The dictionary reached %s values of %s, further values are not encoded.",
+						maxValuesPerKey, key));
+			}
+			return value;
+		}
+		codes.put(value, values.size());
+		values.add(value);
+		keys.add(key);
+		counts.put(key, count + 1);
+		return value;
+	}
+
+	/**
+	 * replaces the values of the {@link #ENCODED_KEYS} and the features of
+	 * the ad by the instances of the dictionary
+	 */
+	public void intern(Ad ad) {
+		for (PropertyKeys key : ENCODED_KEYS) {
+			String value = ad.getProperties().get(key);
+			if (value != null) {
+				ad.putProperty(key, intern(key, value));
+			}
+		}
+		List<String> features = ad.getFeatureList();
+		if (features != null) {
+			for (ListIterator<String> it = features.listIterator(); it.hasNext();) {
+				it.set(intern(PropertyKeys.FEATURES, it.next()));
+			}
+		}
+	}
+
+}
@@ -30,6 +30,7 @@ import com.github.matthesrieke.realty.crawler.Crawler;
 import com.github.matthesrieke.realty.crawler.ImmobilienScout24Crawler;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import org.hamcrest.MatcherAssert;
@@ -70,4 +71,64 @@ public class ImmobilitienScout24CrawlerTest {
 		assertThat(img, CoreMatchers.is("http://picture8is24-a.akamaihd.net/pic/orig02/N/355/851/533/355851533-0.jpg/ORIG/legacy_thumbnail/300x225/format/jpg/quality/80?642789033"));
 
 	}
+
+    private static List<Ad> crawl() throws IOException {
+		InputStream is = ImmobilitienScout24CrawlerTest.class.getResourceAsStream("/immobilienscout24.html");
+		Crawler crawler = new ImmobilienScout24Crawler();
+		return crawler.parseDom(crawler.preprocessContent(Util.parseStream(is)));
+    }
+
+    @Test
+	public void testProperties() throws IOException {
+		Ad first = crawl().get(0);
+
+		assertThat(first.getId(), CoreMatchers.is("http://www.immobilienscout24.de/expose/80007893"));
+		assertThat(first.getProperty(Ad.PropertyKeys.ID), CoreMatchers.is(first.getId()));
+		assertThat(first.getProperty(Ad.PropertyKeys.LOCATION), CoreMatchers.is("Kempen, Viersen (Kreis)"));
+		assertThat(first.getProperty(Ad.PropertyKeys.PRICE), CoreMatchers.is("450 €"));
+		assertThat(first.getPriceCents(), CoreMatchers.is(45000L));
+		assertThat(first.getProperty(Ad.PropertyKeys.ROOMS), CoreMatchers.is("4"));
+		assertThat(first.getRooms(), CoreMatchers.is(4f));
+		assertThat(first.getProperty(Ad.PropertyKeys.SPACE), CoreMatchers.is("80 m²"));
+		assertThat(first.getSpace(), CoreMatchers.is(80f));
+		assertThat(first.getFeatureList(), CoreMatchers.is(Arrays.asList("Garten")));
+		assertThat(first.getProperty(Ad.PropertyKeys.SELLER_TYPE), CoreMatchers.is("Gewerblicher Anbieter"));
+		assertThat(first.getProperty(Ad.PropertyKeys.PROVIDER), CoreMatchers.is("immobilienscout24"));
+		assertThat(first.getProperty(Ad.PropertyKeys.DESCRIPTION), CoreMatchers.is(
+				"ATTRAKTIVE 3-4 Zimmer mit Wohnküche, sehr gepflegtes & ruhiges 3-Parteienhaus in Kempen-St. Hubert."));
+    }
+
+    @Test
+	public void testStreetAddressAndPrivateSeller() throws IOException {
+		List<Ad> items = crawl();
+		Ad last = items.get(items.size() - 1);
+
+		assertThat(last.getId(), CoreMatchers.is("http://www.immobilienscout24.de/expose/74776235"));
+		assertThat(last.getProperty(Ad.PropertyKeys.LOCATION), CoreMatchers.is("Joseph-Görres-Straße 5, Uerdingen, Krefeld"));
+		assertThat(last.getRooms(), CoreMatchers.is(3.5f));
+		assertThat(last.getSpace(), CoreMatchers.is(92f));
+		assertThat(last.getPriceCents(), CoreMatchers.is(57500L));
+		assertThat(last.getFeatureList(), CoreMatchers.is(Arrays.asList("Provisionsfrei*", "Balkon", "Garten")));
+		assertThat(last.getProperty(Ad.PropertyKeys.SELLER_TYPE), CoreMatchers.is("Privater Anbieter"));
+    }
+
+    @Test
+	public void testAllAdsComplete() throws IOException {
+		for (Ad ad : crawl()) {
+			assertThat(ad.getId().startsWith("http://www.immobilienscout24.de/expose/"), CoreMatchers.is(true));
+			assertThat(ad.getProperty(Ad.PropertyKeys.LOCATION), CoreMatchers.notNullValue());
+			assertThat(ad.getPriceCents() > 0, CoreMatchers.is(true));
+			assertThat(ad.getSpace() > 0, CoreMatchers.is(true));
+			assertThat(ad.getRooms() > 0, CoreMatchers.is(true));
+			assertThat(ad.getProperty(Ad.PropertyKeys.SELLER_TYPE), CoreMatchers.notNullValue());
+		}
+    }
+
+    @Test
+	public void testMissingResultList() throws IOException {
+		Crawler crawler = new ImmobilienScout24Crawler();
+		List<Ad> items = crawler.parseDom(crawler.preprocessContent(new StringBuilder("<html></html>")));
+
+		assertThat(items.isEmpty(), CoreMatchers.is(true));
+    }
 }
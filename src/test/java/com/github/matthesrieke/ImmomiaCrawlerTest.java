@@ -26,23 +26,37 @@ import com.github.matthesrieke.realty.Ad;
 import com.github.matthesrieke.realty.CrawlerException;
 import com.github.matthesrieke.realty.Util;
 import com.github.matthesrieke.realty.crawler.Crawler;
-import com.github.matthesrieke.realty.crawler.ImmomiaCrawler;
+import com.github.matthesrieke.realty.crawler.RuleBasedCrawler;
 
 public class ImmomiaCrawlerTest {
 	
 	@Test
 	public void testCrawling() throws CrawlerException, IOException {
 		InputStream is = getClass().getResourceAsStream("/immomia.html");
-		Crawler crawler = new ImmomiaCrawler();
+		Crawler crawler = RuleBasedCrawler.forProvider("wn-immo");
 		List<Ad> items = crawler.parseDom(crawler.preprocessContent(Util.parseStream(is)));
 		
-		Assert.assertTrue(items.size() == 21);
+		/*
+		 * the results are split into two tables by a banner
+		 */
+		Assert.assertTrue(items.size() == 24);
 		
 		Ad first = items.get(0);
+		
+		Assert.assertTrue(first.getId().equals("http://www.wn-immo.de/ms-aaseestadt-etagenwohnung.a-920645.html"));
+		
+		Ad fourth = items.get(3);
 
-		String img = first.getProperties().get(Ad.PropertyKeys.IMAGE);
+		String img = fourth.getProperties().get(Ad.PropertyKeys.IMAGE);
 		
 		Assert.assertTrue(img.equals("http://rub-media.westfaelische-nachrichten.de/media/19348/79774739848253/wna_7624111.jpg"));
+		
+		/*
+		 * "800,00 €" and "76 m²"
+		 */
+		Assert.assertEquals(80000, fourth.getPriceCents());
+		Assert.assertEquals(76f, fourth.getSpace(), 0f);
+		Assert.assertEquals(3f, fourth.getRooms(), 0f);
 
 	}
 
@@ -17,6 +17,7 @@ package com.github.matthesrieke;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.StringReader;
 import java.util.List;
 
 import org.junit.Assert;
@@ -26,14 +27,15 @@ import com.github.matthesrieke.realty.Ad;
 import com.github.matthesrieke.realty.CrawlerException;
 import com.github.matthesrieke.realty.Util;
 import com.github.matthesrieke.realty.crawler.Crawler;
-import com.github.matthesrieke.realty.crawler.NadannCrawler;
+import com.github.matthesrieke.realty.crawler.RuleBasedCrawler;
+import com.github.matthesrieke.realty.rules.ExtractionRules;
 
 public class NadannCrawlerTest {
 	
 	@Test
 	public void testCrawling() throws CrawlerException, IOException {
 		InputStream is = getClass().getResourceAsStream("/nadann.html");
-		Crawler crawler = new NadannCrawler();
+		Crawler crawler = RuleBasedCrawler.forProvider("nadann");
 		List<Ad> items = crawler.parseDom(crawler.preprocessContent(Util.parseStream(is)));
 		
 		Assert.assertTrue(items.size() == 81);
@@ -45,5 +47,25 @@ public class NadannCrawlerTest {
 		Assert.assertTrue(img.contains("Burgsteinfurt"));
 
 	}
+	
+	@Test
+	public void testKeepSource() throws CrawlerException, IOException {
+		StringBuilder rules = Util.parseStream(getClass().getResourceAsStream("/rules/nadann.properties"));
+		rules.append("\nkeepSource = true\n");
+		Crawler crawler = new RuleBasedCrawler(ExtractionRules.parse(new StringReader(rules.toString())));
+		
+		InputStream is = getClass().getResourceAsStream("/nadann.html");
+		List<Ad> items = crawler.parseDom(crawler.preprocessContent(Util.parseStream(is)));
+		
+		Assert.assertTrue(items.size() == 81);
+		
+		String source = items.get(0).getSource().toString();
+		
+		Assert.assertTrue(source.startsWith("<div class=\"klanz klanz_table_cell\""));
+		Assert.assertTrue(source.endsWith("</div>"));
+		Assert.assertTrue(source.contains("Burgsteinfurt"));
+		Assert.assertTrue(RuleBasedCrawler.forProvider("nadann").parseDom(
+				Util.parseStream(getClass().getResourceAsStream("/nadann.html"))).get(0).getSource() == null);
+	}
 
 }
@@ -25,14 +25,14 @@ import org.junit.Test;
 import com.github.matthesrieke.realty.Ad;
 import com.github.matthesrieke.realty.Util;
 import com.github.matthesrieke.realty.crawler.Crawler;
-import com.github.matthesrieke.realty.crawler.WohnungenMsCrawler;
+import com.github.matthesrieke.realty.crawler.RuleBasedCrawler;
 
 public class WohnungenMsCrawlerTest {
 
 	@Test
 	public void testParsing() throws IOException {
 		InputStream is = getClass().getResourceAsStream("/wohnungen.ms.html");
-		Crawler crawler = new WohnungenMsCrawler();
+		Crawler crawler = RuleBasedCrawler.forProvider("wohnungen.ms");
 		List<Ad> items = crawler.parseDom(crawler.preprocessContent(Util.parseStream(is)));
 		
 		Assert.assertTrue(items.size() == 5);
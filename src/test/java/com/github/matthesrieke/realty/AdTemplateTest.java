@@ -0,0 +1,92 @@
+/**
+ * Copyright (C) 2015 Matthes Rieke
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.matthesrieke.realty;
+
+import java.io.IOException;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.github.matthesrieke.realty.Ad.PropertyKeys;
+
+public class AdTemplateTest {
+
+	private static String render(String template, Ad ad) throws IOException {
+		StringBuilder sb = new StringBuilder();
+		AdTemplate.compile(template).render(ad, sb);
+		return sb.toString();
+	}
+
+	@Test
+	public void testRender() throws IOException {
+		Ad ad = Ad.forId("1");
+		ad.putProperty(PropertyKeys.LOCATION, "Münster");
+		ad.putProperty(PropertyKeys.PRICE, "650 €");
+		
+		Assert.assertEquals("<p>Münster: 650 €</p>",
+				render("<p>${LOCATION}: ${PRICE}</p>", ad));
+		Assert.assertEquals("Münster", render("${LOCATION}", ad));
+		Assert.assertEquals("MünsterMünster", render("${LOCATION}${LOCATION}", ad));
+	}
+
+	@Test
+	public void testEscaping() throws IOException {
+		Ad ad = Ad.forId("1");
+		ad.putProperty(PropertyKeys.DESCRIPTION, "<b>Bad & \"WC\"</b> 'neu'");
+		
+		Assert.assertEquals("<td title=\"&lt;b&gt;Bad &amp; &quot;WC&quot;&lt;/b&gt; &#39;neu&#39;\">",
+				render("<td title=\"${DESCRIPTION}\">", ad));
+	}
+
+	@Test
+	public void testMissingValue() throws IOException {
+		Assert.assertEquals("[]", render("[${ROOMS}]", Ad.forId("1")));
+	}
+
+	@Test
+	public void testUnknownPlaceholders() throws IOException {
+		Ad ad = Ad.forId("1");
+		ad.putProperty(PropertyKeys.ROOMS, "3");
+		
+		Assert.assertEquals("${ZIMMER} ${rooms} 3", render("${ZIMMER} ${rooms} ${ROOMS}", ad));
+		Assert.assertEquals("${} 3 ${ROOMS", render("${} ${ROOMS} ${ROOMS", ad));
+		Assert.assertEquals("{ROOMS} $3", render("{ROOMS} $${ROOMS}", ad));
+	}
+
+	@Test
+	public void testFeatures() throws IOException {
+		Ad ad = Ad.forId("1");
+		ad.putProperty(PropertyKeys.FEATURES, "Balkon, <Keller>");
+		
+		Assert.assertEquals("Balkon, &lt;Keller&gt;", render("${FEATURES}", ad));
+	}
+
+	@Test
+	public void testMissingImage() throws IOException {
+		Ad ad = Ad.forId("1");
+		Assert.assertEquals("static/img/provider/rlt-crwlr.png", render("${IMAGE}", ad));
+		
+		ad.putProperty(PropertyKeys.PROVIDER, "immomia");
+		Assert.assertEquals("static/img/provider/immomia.png", render("${IMAGE}", ad));
+		
+		ad.putProperty(PropertyKeys.IMAGE, "");
+		Assert.assertEquals("static/img/provider/immomia.png", render("${IMAGE}", ad));
+		
+		ad.putProperty(PropertyKeys.IMAGE, "http://localhost/a.jpg?w=1&h=2");
+		Assert.assertEquals("http://localhost/a.jpg?w=1&amp;h=2", render("${IMAGE}", ad));
+	}
+
+}
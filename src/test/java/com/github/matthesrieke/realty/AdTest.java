@@ -0,0 +1,146 @@
+/**
+ * Copyright (C) 2015 Matthes Rieke
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.matthesrieke.realty;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.github.matthesrieke.realty.Ad.PropertyKeys;
+
+public class AdTest {
+
+	@Test
+	public void testNumericFields() {
+		Ad ad = Ad.forId("1");
+		ad.putProperty(PropertyKeys.PRICE, "1.234,56 €");
+		ad.putProperty(PropertyKeys.SPACE, "ca. 75 m²");
+		ad.putProperty(PropertyKeys.ROOMS, "3,5");
+		
+		Assert.assertEquals(123456, ad.getPriceCents());
+		Assert.assertEquals(75f, ad.getSpace(), 0f);
+		Assert.assertEquals(3.5f, ad.getRooms(), 0f);
+		Assert.assertEquals("1.234,56 €", ad.getProperty(PropertyKeys.PRICE));
+	}
+
+	@Test
+	public void testUnknownNumericFields() {
+		Ad ad = Ad.forId("1");
+		Assert.assertEquals(Ad.UNKNOWN, ad.getPriceCents());
+		Assert.assertEquals(Ad.UNKNOWN, ad.getSpace(), 0f);
+		
+		ad.putProperty(PropertyKeys.PRICE, "auf Anfrage");
+		ad.putProperty(PropertyKeys.ROOMS, null);
+		
+		Assert.assertEquals(Ad.UNKNOWN, ad.getPriceCents());
+		Assert.assertEquals(Ad.UNKNOWN, ad.getRooms(), 0f);
+		
+		/*
+		 * a value put again replaces the parsed one
+		 */
+		ad.putProperty(PropertyKeys.PRICE, "500 €");
+		ad.putProperty(PropertyKeys.PRICE, null);
+		Assert.assertEquals(Ad.UNKNOWN, ad.getPriceCents());
+	}
+
+	@Test
+	public void testFeatures() {
+		Ad ad = Ad.forId("1");
+		Assert.assertNull(ad.getProperty(PropertyKeys.FEATURES));
+		
+		ad.putProperty(PropertyKeys.FEATURES, "Balkon, Keller");
+		
+		Assert.assertEquals(Arrays.asList("Balkon", "Keller"), ad.getFeatureList());
+		Assert.assertEquals("Balkon, Keller", ad.getProperty(PropertyKeys.FEATURES));
+		Assert.assertFalse(ad.getProperties().containsKey(PropertyKeys.FEATURES));
+	}
+
+	@Test
+	public void testBlankFeatures() {
+		for (String blank : Arrays.asList(null, "", "  ")) {
+			Ad ad = Ad.forId("1");
+			ad.putProperty(PropertyKeys.FEATURES, "Balkon");
+			ad.putProperty(PropertyKeys.FEATURES, blank);
+			
+			Assert.assertTrue(ad.getFeatureList().isEmpty());
+			Assert.assertNull(ad.getProperty(PropertyKeys.FEATURES));
+		}
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void testPropertiesUnmodifiable() {
+		Ad.forId("1").getProperties().put(PropertyKeys.PRICE, "500 €");
+	}
+
+	@Test
+	public void testLegacyObjectMigrated() throws Exception {
+		Ad ad = Ad.forId("legacy");
+		ad.putProperty(PropertyKeys.LOCATION, "Münster");
+		
+		/*
+		 * former ads kept a hash map with the joined features and the
+		 * prices as text only
+		 */
+		Map<PropertyKeys, String> legacy = new HashMap<>(ad.getProperties());
+		legacy.put(PropertyKeys.PRICE, "650 €");
+		legacy.put(PropertyKeys.SPACE, "75,5 m²");
+		legacy.put(PropertyKeys.FEATURES, "Balkon, Keller");
+		setField(ad, "properties", legacy);
+		setField(ad, "featureList", null);
+		
+		Ad migrated = Util.deserialize(new ByteArrayInputStream(Util.serialize(ad)), Ad.class);
+		
+		Assert.assertEquals("legacy", migrated.getId());
+		Assert.assertEquals("Münster", migrated.getProperty(PropertyKeys.LOCATION));
+		Assert.assertEquals(65000, migrated.getPriceCents());
+		Assert.assertEquals(75.5f, migrated.getSpace(), 0f);
+		Assert.assertEquals(Ad.UNKNOWN, migrated.getRooms(), 0f);
+		Assert.assertFalse(migrated.getProperties().containsKey(PropertyKeys.FEATURES));
+		Assert.assertEquals(Collections.emptyList(), migrated.getFeatureList());
+	}
+
+	@Test
+	public void testLegacyFeatureListKept() throws Exception {
+		Ad ad = Ad.forId("legacy");
+		Map<PropertyKeys, String> legacy = new HashMap<>(ad.getProperties());
+		legacy.put(PropertyKeys.FEATURES, "Balkon, Keller");
+		setField(ad, "properties", legacy);
+		setField(ad, "featureList", Arrays.asList("Balkon", "Keller"));
+		
+		Ad migrated = Util.deserialize(new ByteArrayInputStream(Util.serialize(ad)), Ad.class);
+		
+		Assert.assertEquals(Arrays.asList("Balkon", "Keller"), migrated.getFeatureList());
+		Assert.assertEquals("Balkon, Keller", migrated.getProperty(PropertyKeys.FEATURES));
+	}
+
+	private static void setField(Ad ad, String name, Object value) throws IOException {
+		try {
+			Field field = Ad.class.getDeclaredField(name);
+			field.setAccessible(true);
+			field.set(ad, value);
+		} catch (ReflectiveOperationException e) {
+			throw new IOException(e);
+		}
+	}
+
+}
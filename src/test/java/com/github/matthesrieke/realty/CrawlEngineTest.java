@@ -0,0 +1,348 @@
+/**
+ * Copyright (C) 2015 Matthes Rieke
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.matthesrieke.realty;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.joda.time.DateTime;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.github.matthesrieke.realty.crawler.Crawler;
+import com.github.matthesrieke.realty.http.CircuitBreaker;
+import com.github.matthesrieke.realty.http.PageFetcher;
+import com.github.matthesrieke.realty.http.PendingPage;
+import com.github.matthesrieke.realty.notification.Notification;
+import com.github.matthesrieke.realty.storage.CrawlCheckpoint;
+import com.github.matthesrieke.realty.storage.CrawlRun;
+import com.github.matthesrieke.realty.storage.H2Storage;
+import com.github.matthesrieke.realty.storage.Storage;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+public class CrawlEngineTest {
+
+	/**
+	 * pages 1 to 4 hold two ads each, page 5 is empty
+	 */
+	private static final int LAST_PAGE = 4;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private HttpServer server;
+	private final List<Integer> requestedPages = Collections.synchronizedList(new ArrayList<Integer>());
+	private final List<PendingPage> prefetched = Collections.synchronizedList(new ArrayList<PendingPage>());
+	private String baseLink;
+	private Properties properties;
+
+	/**
+	 * the response of this page is held back until the test ends, the
+	 * page before is parsed once it has been requested
+	 */
+	private volatile int heldPage;
+	private final CountDownLatch heldRequested = new CountDownLatch(1);
+	private final CountDownLatch released = new CountDownLatch(1);
+
+	/**
+	 * the crawler fails on the ads of this page
+	 */
+	private volatile int failingPage;
+	private Storage storage;
+	private PageFetcher fetcher;
+	private CrawlEngine engine;
+
+	@Before
+	public void setup() throws IOException {
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		server.createContext("/", new HttpHandler() {
+
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				int page = Integer.parseInt(exchange.getRequestURI().getQuery().substring("page=".length()));
+				requestedPages.add(page);
+				if (page == heldPage) {
+					heldRequested.countDown();
+					try {
+						released.await(10, TimeUnit.SECONDS);
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+				}
+				StringBuilder body = new StringBuilder();
+				if (page <= LAST_PAGE) {
+					body.append(adId(page, 'a')).append('\n').append(adId(page, 'b'));
+				}
+				byte[] bytes = body.toString().getBytes(StandardCharsets.UTF_8);
+				exchange.sendResponseHeaders(200, bytes.length == 0 ? -1 : bytes.length);
+				if (bytes.length > 0) {
+					try (OutputStream os = exchange.getResponseBody()) {
+						os.write(bytes);
+					}
+				}
+				exchange.close();
+			}
+		});
+		server.start();
+		baseLink = "http://127.0.0.1:" + server.getAddress().getPort() + "/list";
+		
+		storage = new H2Storage(folder.getRoot().getAbsolutePath());
+		
+		properties = new Properties();
+		properties.setProperty("rateLimit.permitsPerSecond", "1000");
+		properties.setProperty("rateLimit.burst", "10");
+		properties.setProperty("incrementalStopPages", "1");
+		properties.setProperty("crawlParallelism", "1");
+		properties.setProperty("resumeMaxAgeHours", "1");
+		fetcher = new PageFetcher(properties);
+		engine = new CrawlEngine(Collections.<Crawler>singletonList(new LineCrawler()),
+				storage, new NoNotification(), fetcher, properties);
+	}
+
+	@After
+	public void shutdown() {
+		released.countDown();
+		engine.shutdown();
+		fetcher.shutdown();
+		storage.shutdown();
+		server.stop(0);
+	}
+
+	private static String adId(int page, char suffix) {
+		return "p" + page + suffix;
+	}
+
+	private Map<String, Ad> storedAds() throws IOException {
+		Map<String, Ad> result = new HashMap<>();
+		for (Ad ad : storage.getAllItems()) {
+			result.put(ad.getId(), ad);
+		}
+		return result;
+	}
+
+	@Test
+	public void testIncrementalStopOnKnownAds() throws IOException, InterruptedException {
+		storage.storeItemsAndProvideNew(Arrays.asList(Ad.forId(adId(2, 'a')), Ad.forId(adId(2, 'b'))));
+		
+		engine.crawl(Collections.singletonList(baseLink), false);
+		
+		/*
+		 * page 2 only holds known ads, page 3 is at most prefetched
+		 */
+		Map<String, Ad> stored = storedAds();
+		Assert.assertEquals(4, stored.size());
+		Assert.assertTrue(stored.containsKey(adId(1, 'a')));
+		Assert.assertFalse(stored.containsKey(adId(3, 'a')));
+		Assert.assertFalse(requestedPages.contains(4));
+		
+		CrawlRun run = storage.getLatestCrawlRun();
+		Assert.assertEquals(CrawlRun.State.FINISHED, run.getState());
+		Assert.assertEquals(2, run.getInsertedCount());
+		Assert.assertTrue(storage.getCheckpoints(run.getId()).isEmpty());
+	}
+
+	/**
+	 * replaces the engine by one which records the prefetched pages
+	 */
+	private void recordPrefetches() {
+		engine.shutdown();
+		engine = new CrawlEngine(Collections.<Crawler>singletonList(new LineCrawler()),
+				storage, new NoNotification(), fetcher, properties) {
+
+			@Override
+			PendingPage prefetch(String link, CircuitBreaker breaker) throws IOException {
+				PendingPage result = super.prefetch(link, breaker);
+				prefetched.add(result);
+				return result;
+			}
+
+		};
+	}
+
+	private PendingPage prefetchedPage(int page) {
+		for (PendingPage pending : prefetched) {
+			if (pending.getUrl().endsWith("?page=" + page)) {
+				return pending;
+			}
+		}
+		throw new AssertionError("Page " + page + " has not been prefetched");
+	}
+
+	@Test
+	public void testPrefetchCancelledOnIncrementalStop() throws IOException, InterruptedException {
+		recordPrefetches();
+		heldPage = 3;
+		storage.storeItemsAndProvideNew(Arrays.asList(Ad.forId(adId(2, 'a')), Ad.forId(adId(2, 'b'))));
+		
+		engine.crawl(Collections.singletonList(baseLink), false);
+		
+		/*
+		 * page 3 was requested while page 2 was parsed and the crawl
+		 * stopped at page 2
+		 */
+		Assert.assertTrue(requestedPages.contains(3));
+		Assert.assertTrue(prefetchedPage(3).isCancelled());
+		Assert.assertFalse(prefetchedPage(2).isCancelled());
+		Assert.assertEquals(3, prefetched.size());
+		
+		Map<String, Ad> stored = storedAds();
+		Assert.assertEquals(4, stored.size());
+		Assert.assertFalse(stored.containsKey(adId(3, 'a')));
+		Assert.assertEquals(CrawlRun.State.FINISHED, storage.getLatestCrawlRun().getState());
+	}
+
+	@Test
+	public void testPrefetchCancelledOnParseFailure() throws IOException, InterruptedException {
+		recordPrefetches();
+		heldPage = 3;
+		failingPage = 2;
+		
+		engine.crawl(Collections.singletonList(baseLink), true);
+		
+		Assert.assertTrue(requestedPages.contains(3));
+		Assert.assertTrue(prefetchedPage(3).isCancelled());
+		Assert.assertFalse(requestedPages.contains(4));
+		
+		Map<String, Ad> stored = storedAds();
+		Assert.assertEquals(2, stored.size());
+		Assert.assertTrue(stored.containsKey(adId(1, 'a')));
+		Assert.assertFalse(stored.containsKey(adId(2, 'a')));
+		Assert.assertFalse(stored.containsKey(adId(3, 'a')));
+	}
+
+	@Test
+	public void testResumeAtCheckpoint() throws IOException, InterruptedException {
+		DateTime runStart = new DateTime().minusMinutes(30);
+		CrawlRun interrupted = storage.startCrawlRun(runStart, true);
+		storage.storeCheckpoint(new CrawlCheckpoint(interrupted.getId(), baseLink, 3, 0, false));
+		
+		engine.crawl(Collections.singletonList(baseLink));
+		
+		Assert.assertEquals(Integer.valueOf(3), requestedPages.get(0));
+		Map<String, Ad> stored = storedAds();
+		Assert.assertEquals(4, stored.size());
+		Assert.assertFalse(stored.containsKey(adId(1, 'a')));
+		
+		/*
+		 * ads of the resumed session are not dated back to the interrupted one
+		 */
+		Assert.assertTrue(stored.get(adId(3, 'a')).getDateTime().isAfter(runStart.plusMinutes(20)));
+		
+		CrawlRun run = storage.getLatestCrawlRun();
+		Assert.assertEquals(interrupted.getId(), run.getId());
+		Assert.assertEquals(CrawlRun.State.FINISHED, run.getState());
+		Assert.assertEquals(4, run.getInsertedCount());
+	}
+
+	@Test
+	public void testOutdatedRunNotResumed() throws IOException, InterruptedException {
+		CrawlRun outdated = storage.startCrawlRun(new DateTime().minusDays(2), false);
+		storage.storeCheckpoint(new CrawlCheckpoint(outdated.getId(), baseLink, 3, 0, false));
+		
+		engine.crawl(Collections.singletonList(baseLink));
+		
+		Assert.assertEquals(Integer.valueOf(1), requestedPages.get(0));
+		Assert.assertEquals(2 * LAST_PAGE, storedAds().size());
+		Assert.assertTrue(storage.getCheckpoints(outdated.getId()).isEmpty());
+		
+		CrawlRun run = storage.getLatestCrawlRun();
+		Assert.assertTrue(run.getId() > outdated.getId());
+		Assert.assertTrue(run.isFullCrawl());
+		Assert.assertEquals(CrawlRun.State.FINISHED, run.getState());
+	}
+
+	/**
+	 * every line of a page is the id of an ad
+	 */
+	private class LineCrawler implements Crawler {
+
+		@Override
+		public StringBuilder preprocessContent(StringBuilder content) {
+			return content;
+		}
+
+		@Override
+		public boolean supportsParsing(String url) {
+			return url.startsWith(baseLink);
+		}
+
+		@Override
+		public List<Ad> parseDom(StringBuilder content) throws IOException {
+			if (heldPage > 0 && content.indexOf(adId(heldPage - 1, 'a')) >= 0) {
+				try {
+					heldRequested.await(10, TimeUnit.SECONDS);
+				} catch (InterruptedException e) {
+					throw new IOException(e);
+				}
+			}
+			if (failingPage > 0 && content.indexOf(adId(failingPage, 'a')) >= 0) {
+				throw new IOException("Invalid page " + failingPage);
+			}
+			List<Ad> result = new ArrayList<>();
+			for (String line : content.toString().split("\n")) {
+				if (!line.isEmpty()) {
+					result.add(Ad.forId(line));
+				}
+			}
+			return result;
+		}
+
+		@Override
+		public int getFirstPageIndex() {
+			return 1;
+		}
+
+		@Override
+		public String prepareLinkForPage(String baseLink, int page) {
+			return baseLink + "?page=" + page;
+		}
+
+	}
+
+	private static class NoNotification implements Notification {
+
+		@Override
+		public void notifyOnNewItems(List<Ad> newItems) {
+		}
+
+		@Override
+		public void shutdown() {
+		}
+
+		@Override
+		public void init(Storage st) {
+		}
+
+	}
+
+}
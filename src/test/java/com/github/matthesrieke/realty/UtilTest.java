@@ -0,0 +1,182 @@
+/**
+ * Copyright (C) 2015 Matthes Rieke
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.matthesrieke.realty;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class UtilTest {
+
+	private static final String UMLAUTS = "Größe: 75 m² für 650 €\r\n";
+
+	@Test
+	public void testSplitMultibyteSequence() throws IOException {
+		StringBuilder expected = new StringBuilder();
+		for (int i = 0; i < 16 * 1024 - 1; i++) {
+			expected.append('a');
+		}
+		/*
+		 * the buffer boundary falls after the first byte of the euro sign
+		 */
+		expected.append("€ und ö");
+		byte[] bytes = expected.toString().getBytes(StandardCharsets.UTF_8);
+		
+		StringBuilder result = Util.readStream(new ByteArrayInputStream(bytes),
+				StandardCharsets.UTF_8, -1);
+		
+		Assert.assertEquals(expected.toString(), result.toString());
+	}
+
+	@Test
+	public void testSingleByteReads() throws IOException {
+		byte[] bytes = UMLAUTS.getBytes(StandardCharsets.UTF_8);
+		
+		StringBuilder result = Util.readStream(new TrickleInputStream(bytes),
+				null, bytes.length);
+		
+		Assert.assertEquals(UMLAUTS, result.toString());
+	}
+
+	@Test
+	public void testLatin1() throws IOException {
+		String latin1 = UMLAUTS.replace("€", "EUR");
+		byte[] bytes = latin1.getBytes(StandardCharsets.ISO_8859_1);
+		
+		StringBuilder result = Util.readStream(new ByteArrayInputStream(bytes),
+				StandardCharsets.ISO_8859_1, bytes.length);
+		
+		Assert.assertEquals(latin1, result.toString());
+	}
+
+	@Test
+	public void testMalformedInput() throws IOException {
+		byte[] bytes = "Größe".getBytes(StandardCharsets.ISO_8859_1);
+		
+		StringBuilder result = Util.readStream(new ByteArrayInputStream(bytes),
+				StandardCharsets.UTF_8, -1);
+		
+		Assert.assertEquals("Gr��e", result.toString());
+	}
+
+	@Test
+	public void testParseStream() {
+		byte[] bytes = UMLAUTS.getBytes(StandardCharsets.UTF_8);
+		
+		Assert.assertEquals(UMLAUTS, Util.parseStream(new ByteArrayInputStream(bytes)).toString());
+	}
+
+	private static String replaceAll(String text, String[][] replacements) {
+		StringBuilder sb = new StringBuilder(text);
+		Util.replaceAll(sb, replacements);
+		return sb.toString();
+	}
+
+	@Test
+	public void testReplaceAll() {
+		Assert.assertEquals("x-y-x", replaceAll("a-b-a", new String[][] {{"a", "x"}, {"b", "y"}}));
+		Assert.assertEquals("aaaa", replaceAll("aa", new String[][] {{"a", "aa"}}));
+		Assert.assertEquals("", replaceAll("", new String[][] {{"a", "b"}}));
+	}
+
+	@Test
+	public void testReplaceAllInOrder() {
+		/*
+		 * the pairs are applied one after another, the text of a
+		 * replacement is matched by the following pairs
+		 */
+		Assert.assertEquals("cc", replaceAll("ab", new String[][] {{"a", "b"}, {"b", "c"}}));
+		Assert.assertEquals("bc", replaceAll("ab", new String[][] {{"b", "c"}, {"a", "b"}}));
+		Assert.assertEquals("&amp;amp;lt;", replaceAll("&lt;", new String[][] {{"&lt;", "&amp;lt;"}, {"&amp;", "&amp;amp;"}}));
+	}
+
+	private static BigDecimal parse(String text) {
+		return Util.parseNumber(text, Locale.GERMANY);
+	}
+
+	@Test
+	public void testParseNumber() {
+		Assert.assertEquals(new BigDecimal("1234.56"), parse("1.234,56 €"));
+		Assert.assertEquals(new BigDecimal("75"), parse("ca. 75 m²"));
+		Assert.assertEquals(new BigDecimal("3.5"), parse("3,5"));
+		Assert.assertEquals(new BigDecimal("2000"), parse("2.000"));
+		Assert.assertEquals(new BigDecimal("1250000"), parse("1.250.000 EUR"));
+		Assert.assertEquals(new BigDecimal("2.5"), parse("2.5 Zimmer"));
+	}
+
+	@Test
+	public void testParseNumberRange() {
+		/*
+		 * the lower bound of a range
+		 */
+		Assert.assertEquals(new BigDecimal("500"), parse("500 - 600 €"));
+		Assert.assertEquals(new BigDecimal("2"), parse("2-3 Zimmer"));
+		Assert.assertEquals(new BigDecimal("45.5"), parse("45,5–60 m²"));
+	}
+
+	@Test
+	public void testParseNumberWithoutDigits() {
+		Assert.assertNull(parse(null));
+		Assert.assertNull(parse(""));
+		Assert.assertNull(parse("  "));
+		Assert.assertNull(parse("auf Anfrage"));
+		Assert.assertNull(parse("m²"));
+	}
+
+	@Test
+	public void testParseNumberLocale() {
+		Assert.assertEquals(new BigDecimal("1234.56"), Util.parseNumber("1,234.56", Locale.US));
+	}
+
+	/**
+	 * returns at most one byte per read
+	 */
+	private static class TrickleInputStream extends InputStream {
+
+		private final byte[] bytes;
+		private int position;
+
+		TrickleInputStream(byte[] bytes) {
+			this.bytes = bytes;
+		}
+
+		@Override
+		public int read() {
+			return position < bytes.length ? bytes[position++] & 0xff : -1;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) {
+			if (len == 0) {
+				return 0;
+			}
+			int next = read();
+			if (next == -1) {
+				return -1;
+			}
+			b[off] = (byte) next;
+			return 1;
+		}
+
+	}
+
+}
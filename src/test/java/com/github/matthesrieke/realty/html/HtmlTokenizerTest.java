@@ -0,0 +1,215 @@
+/**
+ * Copyright (C) 2015 Matthes Rieke
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.matthesrieke.realty.html;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class HtmlTokenizerTest {
+
+	/**
+	 * @return the events of the tokenizer, written as tags and text
+	 */
+	static String tokenize(String markup) throws IOException {
+		final StringBuilder events = new StringBuilder();
+		new HtmlTokenizer(new StringReader(markup), new HtmlHandler() {
+
+			@Override
+			public void startElement(HtmlElement element) {
+				events.append('<').append(element.getName());
+				for (Map.Entry<String, String> attribute : element.getAttributes().entrySet()) {
+					events.append(' ').append(attribute.getKey()).append('=').append(attribute.getValue());
+				}
+				events.append('>');
+			}
+
+			@Override
+			public void endElement(HtmlElement element) {
+				events.append("</").append(element.getName()).append('>');
+			}
+
+			@Override
+			public void characters(CharSequence text) {
+				events.append(text);
+			}
+
+			@Override
+			public void endDocument() {
+				events.append("|");
+			}
+		}).parse();
+		return events.toString();
+	}
+
+	@Test
+	public void testImpliedListItemEnd() throws IOException {
+		Assert.assertEquals("<ul><li>a</li><li>b</li></ul>|",
+				tokenize("<ul><li>a<li>b</ul>"));
+		Assert.assertEquals("<ul><li><ol><li>a</li></ol></li><li>b</li></ul>|",
+				tokenize("<ul><li><ol><li>a</ol><li>b</ul>"));
+	}
+
+	@Test
+	public void testImpliedParagraphEnd() throws IOException {
+		Assert.assertEquals("<p>a</p><p>b</p><div>c</div>|",
+				tokenize("<p>a<p>b<div>c</div>"));
+	}
+
+	@Test
+	public void testImpliedCellEnd() throws IOException {
+		Assert.assertEquals("<table><tr><td>a</td><td>b</td></tr><tr><td>c</td></tr></table>|",
+				tokenize("<table><tr><td>a<td>b<tr><td>c</table>"));
+	}
+
+	@Test
+	public void testUnclosedElementsEndedAtEof() throws IOException {
+		Assert.assertEquals("<div class=ad><span>a</span></div>|",
+				tokenize("<div class=\"ad\"><span>a"));
+	}
+
+	@Test
+	public void testAttributes() throws IOException {
+		Assert.assertEquals("<a href=/expose/1 title=a > b data-x=>x</a>|",
+				tokenize("<A HREF=/expose/1 title='a > b' data-x>x</a>"));
+	}
+
+	@Test
+	public void testNamedReferences() throws IOException {
+		Assert.assertEquals("<p>a & b < c €   ü</p>|",
+				tokenize("<p>a &amp; b &lt; c &euro; &nbsp; &uuml;</p>"));
+	}
+
+	@Test
+	public void testNumericReferences() throws IOException {
+		Assert.assertEquals("<p>€ € 🏠</p>|",
+				tokenize("<p>&#8364; &#x20ac; &#127968;</p>"));
+	}
+
+	@Test
+	public void testUnknownReferencesKept() throws IOException {
+		Assert.assertEquals("<p>Bad & Küche &unknown; &amp</p>|",
+				tokenize("<p>Bad & Küche &unknown; &amp</p>"));
+	}
+
+	@Test
+	public void testReferencesInAttributes() throws IOException {
+		Assert.assertEquals("<a href=?a=1&b=2>x</a>|",
+				tokenize("<a href=\"?a=1&amp;b=2\">x</a>"));
+	}
+
+	@Test
+	public void testComments() throws IOException {
+		Assert.assertEquals("<p>ab</p>|",
+				tokenize("<p>a<!-- <b> -- c --->b</p>"));
+		Assert.assertEquals("<p>ab</p>|",
+				tokenize("<!DOCTYPE html><p>a<?xml version=\"1.0\"?>b</p>"));
+	}
+
+	@Test
+	public void testUnterminatedCommentAtEof() throws IOException {
+		Assert.assertEquals("<p>a</p>|", tokenize("<p>a<!-- b </p> --"));
+	}
+
+	@Test
+	public void testCdata() throws IOException {
+		Assert.assertEquals("<p>a<b>]</p>|", tokenize("<p><![CDATA[a<b>]]]></p>"));
+	}
+
+	@Test
+	public void testRawText() throws IOException {
+		Assert.assertEquals("<script>if (a < b) { x = '</p>'; }</script><p>c</p>|",
+				tokenize("<script>if (a < b) { x = '</p>'; }</script><p>c</p>"));
+	}
+
+	@Test
+	public void testLongInput() throws IOException {
+		StringBuilder markup = new StringBuilder();
+		StringBuilder expected = new StringBuilder();
+		for (int i = 0; i < 2000; i++) {
+			markup.append("<li>item ").append(i).append(" &euro;");
+			expected.append("<li>item ").append(i).append(" €</li>");
+		}
+		Assert.assertEquals("<ul>" + expected + "</ul>|",
+				tokenize("<ul>" + markup + "</ul>"));
+	}
+
+	@Test
+	public void testStrayEndTagsIgnored() throws IOException {
+		Assert.assertEquals("a<p>b</p>|", tokenize("</div>a</span><p>b</b></p></p>"));
+	}
+
+	@Test
+	public void testEndTagEndsInnerElements() throws IOException {
+		Assert.assertEquals("<div><span><b>a</b></span></div>b|",
+				tokenize("<div><span><b>a</div>b"));
+	}
+
+	@Test
+	public void testEndTagOutsideScopeIgnored() throws IOException {
+		/*
+		 * the div outside of the table is not ended from within a cell
+		 */
+		Assert.assertEquals("<div><table><tr><td>a</td></tr></table>b</div>|",
+				tokenize("<div><table><tr><td>a</div></table>b</div>"));
+	}
+
+	@Test
+	public void testNestedAnchorEndsOuter() throws IOException {
+		Assert.assertEquals("<p><a>1</a><a>2</a></p>|", tokenize("<p><a>1<a>2</a></p>"));
+	}
+
+	@Test(timeout = 10000)
+	public void testManyStrayAndUnclosedTags() throws IOException {
+		StringBuilder markup = new StringBuilder();
+		for (int i = 0; i < 50000; i++) {
+			markup.append("<div><span>");
+		}
+		for (int i = 0; i < 50000; i++) {
+			markup.append("</p></span>");
+		}
+		markup.append("</body>x");
+		
+		/*
+		 * every </span> also ends the div opened inside of it, only the
+		 * outermost div stays open
+		 */
+		String events = tokenize(markup.toString());
+		Assert.assertTrue(events.startsWith("<div><span><div><span>"));
+		Assert.assertTrue(events.endsWith("</div></span>x</div>|"));
+	}
+
+	@Test
+	public void testVoidElements() throws IOException {
+		Assert.assertEquals("<p>a<br></br>b<img src=x.jpg></img>c</p>|",
+				tokenize("<p>a<br>b<img src=x.jpg>c</p>"));
+		/*
+		 * a horizontal rule also ends the paragraph
+		 */
+		Assert.assertEquals("<p>a<br></br>b</p><hr></hr>|",
+				tokenize("<p>a<br/>b<hr />"));
+	}
+
+	@Test
+	public void testVoidEndTagIgnored() throws IOException {
+		Assert.assertEquals("<div><input type=text></input>a</div>|",
+				tokenize("<div><input type=text>a</input></div>"));
+	}
+
+}
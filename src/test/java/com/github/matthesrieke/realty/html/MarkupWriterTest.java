@@ -0,0 +1,97 @@
+/**
+ * Copyright (C) 2015 Matthes Rieke
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.matthesrieke.realty.html;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.xml.sax.InputSource;
+
+public class MarkupWriterTest {
+
+	private static String normalize(String markup) throws IOException {
+		StringBuilder result = new StringBuilder();
+		MarkupWriter.normalize(new StringReader(markup), result);
+		return result.toString();
+	}
+
+	@Test
+	public void testEmptyAndVoidElements() throws IOException {
+		Assert.assertEquals("<p>a<br/>b<img src=\"x.jpg\"/><span/></p>",
+				normalize("<p>a<br>b<img src=x.jpg><span></span>"));
+	}
+
+	@Test
+	public void testImpliedEndTags() throws IOException {
+		Assert.assertEquals("<ul><li>a</li><li>b</li></ul>", normalize("<ul><li>a<li>b</ul>"));
+	}
+
+	@Test
+	public void testEscaping() throws IOException {
+		Assert.assertEquals("<a title=\"&quot;K&amp;M&quot; &lt;&gt;\">1 &lt; 2 &amp; \"3\" &gt; 0</a>",
+				normalize("<a title='\"K&amp;M\" <>'>1 &lt; 2 & \"3\" > 0</a>"));
+	}
+
+	@Test
+	public void testInvalidCharactersDropped() throws IOException {
+		Assert.assertEquals("<p>a\tb\nc</p>", normalize("<p>a\tb\n\u0001c￾</p>"));
+	}
+
+	@Test
+	public void testNamespaceDeclarationDropped() throws IOException {
+		Assert.assertEquals("<html><body/></html>",
+				normalize("<html xmlns=\"http://www.w3.org/1999/xhtml\"><body></body></html>"));
+	}
+
+	@Test
+	public void testInvalidNames() throws IOException {
+		String result = normalize("<div 1a=\"x\" data-ok=\"y\" a\"b=\"z\"><foo:bar>t</foo:bar></div>");
+		
+		Assert.assertTrue(result, result.startsWith("<div data-ok=\"y\">"));
+		assertWellFormed(result);
+	}
+
+	@Test
+	public void testCommentsAndScripts() throws IOException {
+		Assert.assertEquals("<p>a</p><script>if (a &lt; b &amp;&amp; c) {}</script>",
+				normalize("<p>a<!-- x --></p><script>if (a < b && c) {}</script>"));
+	}
+
+	@Test
+	public void testBrokenPageIsWellFormed() throws IOException {
+		assertWellFormed(normalize("<!DOCTYPE html><html><head><meta charset=utf-8>"
+				+ "<title>Wohnungen &amp; Häuser</title></head><body>"
+				+ "<table><tr><td>Kaltmiete<td>650 &euro;<tr><td>Zimmer<td>3</table>"
+				+ "<p>Text<p>mehr <b><i>fett</b> kursiv</i></div>"
+				+ "<form><input name=q><select><option>1<option>2</select></form>"));
+	}
+
+	private static void assertWellFormed(String markup) throws IOException {
+		try {
+			Document document = DocumentBuilderFactory.newInstance().newDocumentBuilder()
+					.parse(new InputSource(new StringReader("<root>" + markup + "</root>")));
+			Assert.assertNotNull(document.getDocumentElement());
+		} catch (Exception e) {
+			throw new AssertionError("Not well-formed: " + markup + " (" + e.getMessage() + ")");
+		}
+	}
+
+}
@@ -0,0 +1,130 @@
+/**
+ * Copyright (C) 2015 Matthes Rieke
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.matthesrieke.realty.html;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class SelectorTest {
+
+	private static HtmlElement element(String name, String... attributes) {
+		Map<String, String> map = new HashMap<>();
+		for (int i = 0; i < attributes.length; i += 2) {
+			map.put(attributes[i], attributes[i + 1]);
+		}
+		return new HtmlElement(name, map, null);
+	}
+
+	private static boolean matches(String selector, HtmlElement element) {
+		Selector parsed = Selector.parse(selector);
+		Assert.assertEquals(1, parsed.length());
+		return parsed.matches(0, element);
+	}
+
+	@Test
+	public void testTag() {
+		Assert.assertTrue(matches("div", element("div")));
+		Assert.assertTrue(matches("DIV", element("div")));
+		Assert.assertFalse(matches("div", element("span")));
+		Assert.assertTrue(matches("*", element("span")));
+	}
+
+	@Test
+	public void testClass() {
+		HtmlElement ad = element("div", "class", "result-list ad  top");
+		
+		Assert.assertTrue(matches(".ad", ad));
+		Assert.assertTrue(matches("div.ad.top", ad));
+		Assert.assertTrue(matches(".result-list", ad));
+		Assert.assertFalse(matches(".result", ad));
+		Assert.assertFalse(matches(".list", ad));
+		Assert.assertFalse(matches("span.ad", ad));
+		Assert.assertFalse(matches(".ad", element("div")));
+	}
+
+	@Test
+	public void testAttributes() {
+		HtmlElement link = element("a", "href", "/expose/1", "data-id", "a b");
+		
+		Assert.assertTrue(matches("a[href]", link));
+		Assert.assertTrue(matches("[href='/expose/1']", link));
+		Assert.assertTrue(matches("[data-id='a b']", link));
+		Assert.assertTrue(matches("[data-id=\"a b\"]", link));
+		Assert.assertFalse(matches("[href='/expose/2']", link));
+		Assert.assertFalse(matches("[title]", link));
+	}
+
+	@Test
+	public void testNegation() {
+		Assert.assertTrue(matches("td:not(.value)", element("td", "class", "label")));
+		Assert.assertTrue(matches("td:not(.value)", element("td")));
+		Assert.assertFalse(matches("td:not(.value)", element("td", "class", "value")));
+		Assert.assertTrue(matches("a:not([rel=nofollow])", element("a")));
+	}
+
+	@Test
+	public void testCombinators() {
+		Selector selector = Selector.parse("table.results > tr  td a");
+		
+		Assert.assertEquals(4, selector.length());
+		Assert.assertFalse(selector.isChildStep(0));
+		Assert.assertTrue(selector.isChildStep(1));
+		Assert.assertFalse(selector.isChildStep(2));
+		Assert.assertFalse(selector.isChildStep(3));
+		Assert.assertTrue(selector.matches(0, element("table", "class", "results")));
+		Assert.assertTrue(selector.matches(1, element("tr")));
+		Assert.assertFalse(selector.matches(1, element("td")));
+		
+		Selector relative = Selector.parse("> a");
+		Assert.assertEquals(1, relative.length());
+		Assert.assertTrue(relative.isChildStep(0));
+	}
+
+	@Test
+	public void testList() {
+		List<Selector> selectors = Selector.parseList("table > tr, table > tbody > tr");
+		
+		Assert.assertEquals(2, selectors.size());
+		Assert.assertEquals(2, selectors.get(0).length());
+		Assert.assertEquals(3, selectors.get(1).length());
+	}
+
+	@Test
+	public void testInvalid() {
+		assertInvalid("", "Empty selector");
+		assertInvalid("[href=/expose/1]", "Name expected");
+		assertInvalid("div..ad", "Name expected");
+		assertInvalid("a[href", "']' expected");
+		assertInvalid("a[title='x]", "Unterminated value");
+		assertInvalid("td:not(a)", "Unsupported negation");
+		assertInvalid("a:hover", "Unexpected character");
+	}
+
+	private static void assertInvalid(String selector, String message) {
+		try {
+			Selector.parse(selector);
+			Assert.fail("accepted " + selector);
+		} catch (IllegalArgumentException e) {
+			Assert.assertTrue(e.getMessage(), e.getMessage().startsWith(message));
+			Assert.assertTrue(e.getMessage(), e.getMessage().endsWith("'" + selector + "'"));
+		}
+	}
+
+}
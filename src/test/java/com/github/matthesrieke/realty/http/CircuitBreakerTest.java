@@ -0,0 +1,109 @@
+/**
+ * Copyright (C) 2015 Matthes Rieke
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.matthesrieke.realty.http;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.github.matthesrieke.realty.http.CircuitBreaker.State;
+
+public class CircuitBreakerTest {
+
+	@Test
+	public void testOpensAtThreshold() {
+		ManualBreaker breaker = new ManualBreaker(3, 1000);
+		
+		Assert.assertEquals(State.CLOSED, breaker.recordFailure());
+		Assert.assertEquals(State.CLOSED, breaker.recordFailure());
+		Assert.assertTrue(breaker.allowRequest());
+		Assert.assertEquals(State.OPEN, breaker.recordFailure());
+		Assert.assertFalse(breaker.allowRequest());
+	}
+
+	@Test
+	public void testSuccessResetsFailures() {
+		ManualBreaker breaker = new ManualBreaker(2, 1000);
+		
+		breaker.recordFailure();
+		Assert.assertEquals(State.CLOSED, breaker.recordSuccess());
+		Assert.assertEquals(0, breaker.getConsecutiveFailures());
+		Assert.assertEquals(State.CLOSED, breaker.recordFailure());
+	}
+
+	@Test
+	public void testHalfOpenProbeCloses() {
+		ManualBreaker breaker = new ManualBreaker(1, 1000);
+		breaker.recordFailure();
+		
+		breaker.advance(999);
+		Assert.assertFalse(breaker.allowRequest());
+		Assert.assertEquals(State.OPEN, breaker.getState());
+		
+		/*
+		 * a single probe is permitted once the open period has passed
+		 */
+		breaker.advance(1);
+		Assert.assertTrue(breaker.allowRequest());
+		Assert.assertEquals(State.HALF_OPEN, breaker.getState());
+		Assert.assertFalse(breaker.allowRequest());
+		
+		Assert.assertEquals(State.HALF_OPEN, breaker.recordSuccess());
+		Assert.assertEquals(State.CLOSED, breaker.getState());
+		Assert.assertTrue(breaker.allowRequest());
+	}
+
+	@Test
+	public void testHalfOpenProbeReopens() {
+		ManualBreaker breaker = new ManualBreaker(3, 1000);
+		breaker.recordFailure();
+		breaker.recordFailure();
+		breaker.recordFailure();
+		
+		breaker.advance(1000);
+		Assert.assertTrue(breaker.allowRequest());
+		
+		/*
+		 * a failed probe opens the circuit regardless of the threshold
+		 */
+		Assert.assertEquals(State.OPEN, breaker.recordFailure());
+		Assert.assertFalse(breaker.allowRequest());
+		breaker.advance(1000);
+		Assert.assertTrue(breaker.allowRequest());
+	}
+
+	/**
+	 * a breaker whose clock only advances when told
+	 */
+	private static class ManualBreaker extends CircuitBreaker {
+
+		private long now = 1;
+
+		ManualBreaker(int failureThreshold, long openMillis) {
+			super("test", failureThreshold, openMillis);
+		}
+
+		void advance(long millis) {
+			now += millis;
+		}
+
+		@Override
+		long currentTimeMillis() {
+			return now;
+		}
+
+	}
+
+}
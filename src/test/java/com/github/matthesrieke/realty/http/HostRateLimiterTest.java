@@ -0,0 +1,138 @@
+/**
+ * Copyright (C) 2015 Matthes Rieke
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.matthesrieke.realty.http;
+
+import java.util.Date;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.client.utils.DateUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class HostRateLimiterTest {
+
+	private static final String HOST = "www.wn-immo.de";
+
+	private static ManualLimiter createLimiter(String permitsPerSecond, String burst) {
+		Properties properties = new Properties();
+		properties.setProperty("rateLimit.permitsPerSecond", permitsPerSecond);
+		properties.setProperty("rateLimit.burst", burst);
+		properties.setProperty("rateLimit.maxBackoffSeconds", "3");
+		return new ManualLimiter(properties);
+	}
+
+	@Test
+	public void testRefill() {
+		ManualLimiter limiter = createLimiter("2", "2");
+		
+		Assert.assertEquals(0, limiter.tryAcquire(HOST));
+		Assert.assertEquals(TimeUnit.MILLISECONDS.toNanos(500), limiter.tryAcquire(HOST));
+		
+		limiter.advance(500);
+		Assert.assertEquals(0, limiter.tryAcquire(HOST));
+		
+		/*
+		 * the bucket holds no more than the burst
+		 */
+		limiter.advance(10000);
+		Assert.assertEquals(0, limiter.tryAcquire(HOST));
+		Assert.assertEquals(0, limiter.tryAcquire(HOST));
+		Assert.assertTrue(limiter.tryAcquire(HOST) > 0);
+		
+		Assert.assertEquals(0, limiter.tryAcquire("other.host"));
+	}
+
+	@Test
+	public void testPerHostRate() {
+		ManualLimiter limiter = createLimiter("1", "1");
+		limiter.setProperty("rateLimit." + HOST + ".permitsPerSecond", "4");
+		
+		Assert.assertEquals(0, limiter.tryAcquire(HOST));
+		Assert.assertEquals(TimeUnit.MILLISECONDS.toNanos(250), limiter.tryAcquire(HOST));
+	}
+
+	@Test
+	public void testRetryAfter() {
+		ManualLimiter limiter = createLimiter("10", "1");
+		
+		Assert.assertEquals(2000, limiter.backOff(HOST, 2000));
+		Assert.assertEquals(TimeUnit.MILLISECONDS.toNanos(2000), limiter.tryAcquire(HOST));
+		
+		limiter.advance(2000);
+		Assert.assertEquals(0, limiter.tryAcquire(HOST));
+		
+		/*
+		 * capped by maxBackoffSeconds
+		 */
+		Assert.assertEquals(3000, limiter.backOff(HOST, 60000));
+	}
+
+	@Test
+	public void testExponentialBackoff() {
+		ManualLimiter limiter = createLimiter("10", "1");
+		
+		Assert.assertEquals(1000, limiter.backOff(HOST, -1));
+		Assert.assertEquals(2000, limiter.backOff(HOST, -1));
+		Assert.assertEquals(3000, limiter.backOff(HOST, -1));
+		Assert.assertEquals(3000, limiter.backOff(HOST, -1));
+		
+		limiter.onSuccess(HOST);
+		Assert.assertEquals(1000, limiter.backOff(HOST, -1));
+	}
+
+	@Test
+	public void testParseRetryAfter() {
+		Assert.assertEquals(120000, PageFetcher.parseRetryAfter("120"));
+		Assert.assertEquals(0, PageFetcher.parseRetryAfter(" 0 "));
+		Assert.assertEquals(-1, PageFetcher.parseRetryAfter(null));
+		Assert.assertEquals(-1, PageFetcher.parseRetryAfter("soon"));
+		
+		long future = PageFetcher.parseRetryAfter(DateUtils.formatDate(
+				new Date(System.currentTimeMillis() + 60000)));
+		Assert.assertTrue(future > 55000 && future <= 60000);
+		Assert.assertEquals(0, PageFetcher.parseRetryAfter("Sun, 29 Mar 2015 10:00:00 GMT"));
+	}
+
+	/**
+	 * a limiter whose clock only advances when told
+	 */
+	private static class ManualLimiter extends HostRateLimiter {
+
+		private final Properties properties;
+		private long now = 1;
+
+		ManualLimiter(Properties properties) {
+			super(properties);
+			this.properties = properties;
+		}
+
+		void setProperty(String key, String value) {
+			properties.setProperty(key, value);
+		}
+
+		void advance(long millis) {
+			now += TimeUnit.MILLISECONDS.toNanos(millis);
+		}
+
+		@Override
+		long nanoTime() {
+			return now;
+		}
+
+	}
+
+}
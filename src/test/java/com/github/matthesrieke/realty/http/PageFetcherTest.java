@@ -0,0 +1,209 @@
+/**
+ * Copyright (C) 2015 Matthes Rieke
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.matthesrieke.realty.http;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Properties;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.github.matthesrieke.realty.storage.PageValidator;
+
+public class PageFetcherTest {
+
+	private StubServer server;
+	private PageFetcher fetcher;
+
+	@Before
+	public void setup() throws IOException {
+		server = new StubServer();
+		Properties properties = new Properties();
+		properties.setProperty("rateLimit.permitsPerSecond", "1000");
+		properties.setProperty("rateLimit.burst", "10");
+		properties.setProperty("retry.baseDelayMillis", "1");
+		properties.setProperty("retry.maxDelayMillis", "1");
+		properties.setProperty("retry.maxRetries", "2");
+		properties.setProperty("rateLimit.maxThrottleRetries", "2");
+		fetcher = new PageFetcher(properties);
+	}
+
+	@After
+	public void shutdown() {
+		fetcher.shutdown();
+		server.close();
+	}
+
+	static byte[] utf8(String text) {
+		return text.getBytes(StandardCharsets.UTF_8);
+	}
+
+	private static byte[] compress(byte[] content, String encoding, boolean zlib) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		OutputStream out = encoding.equals("gzip") ? new GZIPOutputStream(bytes)
+				: new DeflaterOutputStream(bytes, new Deflater(Deflater.DEFAULT_COMPRESSION, !zlib));
+		out.write(content);
+		out.close();
+		return bytes.toByteArray();
+	}
+
+	private static String repeat(String text, int count) {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < count; i++) {
+			sb.append(text);
+		}
+		return sb.toString();
+	}
+
+	@Test
+	public void testConnectionReuse() throws IOException, InterruptedException {
+		server.respond(new StubServer.Response(200, utf8("<html>Münster</html>"))
+				.header("Content-Type", "text/html; charset=UTF-8"));
+		
+		Page first = fetcher.fetch(server.url());
+		Page second = fetcher.fetch(server.url());
+		
+		Assert.assertEquals(200, first.getStatusCode());
+		Assert.assertEquals("<html>Münster</html>", second.getContent().toString());
+		
+		FetchStatistics statistics = fetcher.getStatistics();
+		Assert.assertEquals(2, statistics.getRequests());
+		Assert.assertEquals(1, statistics.getConnectionsOpened());
+	}
+
+	@Test
+	public void testNotModified() throws IOException, InterruptedException {
+		server.respond(new StubServer.Response(200, utf8("<html/>"))
+				.header("ETag", "\"v1\"")
+				.header("Last-Modified", "Sun, 29 Mar 2015 10:00:00 GMT"));
+		server.respond(new StubServer.Response(304, null));
+		
+		Page first = fetcher.fetch(server.url());
+		Assert.assertFalse(first.isNotModified());
+		Assert.assertEquals("\"v1\"", first.getEtag());
+		
+		PageValidator validator = new PageValidator(server.url(), first.getEtag(),
+				first.getLastModified(), Collections.singletonList("ad"));
+		Page second = fetcher.fetch(server.url(), validator);
+		
+		Assert.assertTrue(second.isNotModified());
+		Assert.assertNull(server.getRequest(0).getFirst("If-None-Match"));
+		Assert.assertEquals("\"v1\"", server.getRequest(1).getFirst("If-None-Match"));
+		Assert.assertEquals("Sun, 29 Mar 2015 10:00:00 GMT", server.getRequest(1).getFirst("If-Modified-Since"));
+		Assert.assertEquals(1, fetcher.getStatistics().getNotModified());
+	}
+
+	@Test
+	public void testThrottled() throws IOException, InterruptedException {
+		server.respond(new StubServer.Response(429, null).header("Retry-After", "0"));
+		
+		Page page = fetcher.fetch(server.url());
+		
+		/*
+		 * the first request and two throttle retries
+		 */
+		Assert.assertEquals(3, server.getRequestCount());
+		Assert.assertEquals(429, page.getStatusCode());
+		Assert.assertEquals(0, page.getRetryAfterMillis());
+	}
+
+	@Test
+	public void testUnavailableOnce() throws IOException, InterruptedException {
+		server.respond(new StubServer.Response(503, null).header("Retry-After", "0"));
+		server.respond(new StubServer.Response(200, utf8("<html/>")));
+		
+		Page page = fetcher.fetch(server.url());
+		
+		Assert.assertEquals(2, server.getRequestCount());
+		Assert.assertEquals(200, page.getStatusCode());
+	}
+
+	@Test
+	public void testGzip() throws IOException, InterruptedException {
+		assertDecompressed("gzip", true);
+	}
+
+	@Test
+	public void testDeflate() throws IOException, InterruptedException {
+		assertDecompressed("deflate", true);
+	}
+
+	@Test
+	public void testRawDeflate() throws IOException, InterruptedException {
+		assertDecompressed("deflate", false);
+	}
+
+	private void assertDecompressed(String encoding, boolean zlib) throws IOException, InterruptedException {
+		String html = "<html>" + repeat("<div class=\"ad\">Wohnung in Münster</div>", 200) + "</html>";
+		byte[] content = utf8(html);
+		byte[] wire = compress(content, encoding, zlib);
+		server.respond(new StubServer.Response(200, wire)
+				.header("Content-Type", "text/html; charset=UTF-8")
+				.header("Content-Encoding", encoding));
+		
+		Page page = fetcher.fetch(server.url());
+		
+		Assert.assertEquals(html, page.getContent().toString());
+		Assert.assertEquals("gzip, deflate", server.getRequest(0).getFirst("Accept-Encoding"));
+		
+		TransferVolume transfer = fetcher.getStatistics().getTotalTransfer();
+		Assert.assertEquals(wire.length, transfer.getWireBytes());
+		Assert.assertEquals(content.length, transfer.getContentBytes());
+		Assert.assertEquals(content.length - wire.length, transfer.getSavedBytes());
+	}
+
+	@Test
+	public void testRetryLimit() throws IOException, InterruptedException {
+		server.respond(new StubServer.Response(500, null));
+		
+		Page page = fetcher.fetch(server.url());
+		
+		/*
+		 * the first request and two retries
+		 */
+		Assert.assertEquals(3, server.getRequestCount());
+		Assert.assertEquals(500, page.getStatusCode());
+	}
+
+	@Test
+	public void testRetrySucceeds() throws IOException, InterruptedException {
+		server.respond(new StubServer.Response(502, null));
+		server.respond(new StubServer.Response(200, utf8("<html/>")));
+		
+		Page page = fetcher.fetch(server.url());
+		
+		Assert.assertEquals(2, server.getRequestCount());
+		Assert.assertEquals("<html/>", page.getContent().toString());
+	}
+
+	@Test
+	public void testClientErrorNotRetried() throws IOException, InterruptedException {
+		server.respond(new StubServer.Response(404, null));
+		
+		Assert.assertEquals(404, fetcher.fetch(server.url()).getStatusCode());
+		Assert.assertEquals(1, server.getRequestCount());
+	}
+
+}
@@ -0,0 +1,44 @@
+/**
+ * Copyright (C) 2015 Matthes Rieke
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.matthesrieke.realty.http;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class RetryPolicyTest {
+
+	@Test
+	public void testBounds() {
+		RetryPolicy policy = new RetryPolicy(3, 100, 1000);
+		
+		Assert.assertEquals(3, policy.getMaxRetries());
+		for (int i = 0; i < 100; i++) {
+			assertBetween(50, 100, policy.delayFor(0));
+			assertBetween(100, 200, policy.delayFor(1));
+			assertBetween(200, 400, policy.delayFor(2));
+			assertBetween(500, 1000, policy.delayFor(4));
+			assertBetween(500, 1000, policy.delayFor(64));
+		}
+		
+		Assert.assertEquals(0, new RetryPolicy(-1, 100, 1000).getMaxRetries());
+	}
+
+	private static void assertBetween(long min, long max, long actual) {
+		Assert.assertTrue(actual + " not in [" + min + ", " + max + "]",
+				actual >= min && actual <= max);
+	}
+
+}
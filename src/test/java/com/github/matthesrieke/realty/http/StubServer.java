@@ -0,0 +1,117 @@
+/**
+ * Copyright (C) 2015 Matthes Rieke
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.matthesrieke.realty.http;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * A local HTTP server answering the n-th request with the n-th of its
+ * responses, the last response is repeated.
+ */
+class StubServer implements Closeable {
+
+	private final HttpServer server;
+	private final List<Response> responses = new ArrayList<>();
+	private final List<Headers> requests = Collections.synchronizedList(new ArrayList<Headers>());
+
+	StubServer() throws IOException {
+		this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		this.server.createContext("/", new HttpHandler() {
+
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				Response response;
+				synchronized (responses) {
+					requests.add(exchange.getRequestHeaders());
+					response = responses.get(Math.min(requests.size(), responses.size()) - 1);
+				}
+				for (Map.Entry<String, String> header : response.headers.entrySet()) {
+					exchange.getResponseHeaders().add(header.getKey(), header.getValue());
+				}
+				if (response.body == null) {
+					exchange.sendResponseHeaders(response.status, -1);
+				}
+				else {
+					exchange.sendResponseHeaders(response.status, response.body.length);
+					try (OutputStream os = exchange.getResponseBody()) {
+						os.write(response.body);
+					}
+				}
+				exchange.close();
+			}
+		});
+		this.server.start();
+	}
+
+	StubServer respond(Response response) {
+		synchronized (responses) {
+			responses.add(response);
+		}
+		return this;
+	}
+
+	String url() {
+		return "http://127.0.0.1:" + server.getAddress().getPort() + "/page";
+	}
+
+	int getRequestCount() {
+		return requests.size();
+	}
+
+	/**
+	 * @return the headers of the n-th request, starting at 0
+	 */
+	Headers getRequest(int index) {
+		return requests.get(index);
+	}
+
+	@Override
+	public void close() {
+		server.stop(0);
+	}
+
+	static class Response {
+
+		private final int status;
+		private final byte[] body;
+		private final Map<String, String> headers = new LinkedHashMap<>();
+
+		Response(int status, byte[] body) {
+			this.status = status;
+			this.body = body;
+		}
+
+		Response header(String name, String value) {
+			headers.put(name, value);
+			return this;
+		}
+
+	}
+
+}
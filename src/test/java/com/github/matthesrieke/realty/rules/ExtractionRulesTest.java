@@ -0,0 +1,143 @@
+/**
+ * Copyright (C) 2015 Matthes Rieke
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.matthesrieke.realty.rules;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.github.matthesrieke.realty.Ad.PropertyKeys;
+
+public class ExtractionRulesTest {
+
+	private static final String MINIMAL = "provider = test\nhost = example.org\nrecord = article\n";
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private static ExtractionRules parse(String rules) throws IOException {
+		return ExtractionRules.parse(new StringReader(rules));
+	}
+
+	private static void assertInvalid(String rules, String message) throws IOException {
+		try {
+			parse(rules);
+			Assert.fail("accepted " + rules);
+		} catch (IllegalArgumentException e) {
+			Assert.assertEquals(message, e.getMessage());
+		}
+	}
+
+	@Test
+	public void testBundledRules() throws IOException {
+		for (String provider : Arrays.asList("wn-immo", "wohnungen.ms", "nadann")) {
+			ExtractionRules rules = ExtractionRules.load(provider, null);
+			Assert.assertEquals(provider, rules.getProvider());
+			Assert.assertFalse(rules.getRecords().isEmpty());
+		}
+	}
+
+	@Test
+	public void testPageLinks() throws IOException {
+		ExtractionRules rules = parse(MINIMAL + "firstPage = 0\npageLink = {base}&page={page}\n");
+		
+		Assert.assertEquals(0, rules.getFirstPageIndex());
+		Assert.assertEquals("http://example.org/list?a=b",
+				rules.prepareLinkForPage(" http://example.org/list?a=b ", 0));
+		Assert.assertEquals("http://example.org/list?a=b&page=2",
+				rules.prepareLinkForPage("http://example.org/list?a=b", 2));
+		Assert.assertTrue(rules.supportsParsing("http://www.example.org/list"));
+		Assert.assertFalse(rules.supportsParsing("http://example.com/list"));
+	}
+
+	@Test
+	public void testOptionalRules() throws IOException {
+		ExtractionRules rules = parse(MINIMAL + "generatedId = DESCRIPTION\nrequired = PRICE, LOCATION\nkeepSource = true\n");
+		
+		Assert.assertEquals(PropertyKeys.DESCRIPTION, rules.getGeneratedId());
+		Assert.assertEquals(Arrays.asList(PropertyKeys.PRICE, PropertyKeys.LOCATION), rules.getRequired());
+		Assert.assertTrue(rules.isKeepSource());
+		Assert.assertNull(rules.getPairLabel());
+	}
+
+	@Test
+	public void testLabelPrecedence() throws IOException {
+		ExtractionRules rules = parse(MINIMAL + "label.Zimmer = ROOMS\nlabel.Wohnfläche = SPACE\nlabel.fläche = PRICE\n");
+		
+		Assert.assertEquals(PropertyKeys.SPACE, rules.resolveLabel("Wohnfläche ca.").get(0).getKey());
+		Assert.assertEquals(PropertyKeys.PRICE, rules.resolveLabel("Grundfläche").get(0).getKey());
+		Assert.assertTrue(rules.resolveLabel("Baujahr").isEmpty());
+	}
+
+	@Test
+	public void testMissingRules() throws IOException {
+		assertInvalid("host = example.org\nrecord = article\n", "Missing extraction rule: provider");
+		assertInvalid("provider = test\nrecord = article\n", "Missing extraction rule: host");
+		assertInvalid("provider = test\nhost = example.org\nrecord = \n", "Missing extraction rule: record");
+		assertInvalid(MINIMAL + "pair = tr\npair.value = td\n", "Missing extraction rule: pair.label");
+	}
+
+	@Test
+	public void testInvalidRules() throws IOException {
+		assertInvalid(MINIMAL + "recrod = div\n", "Unknown extraction rule: recrod");
+		assertInvalid(MINIMAL + "firstPage = one\n", "Invalid extraction rule: firstPage = one");
+		assertInvalid(MINIMAL + "field.PRIZE = td\n", "Unknown property: PRIZE");
+		assertInvalid(MINIMAL + "label.Preis = PRICE | round\n", "Unknown transformation: round");
+		assertInvalid(MINIMAL + "label.Ort = LOCATION | part x\n", "Invalid index of transformation PART: x");
+		assertInvalid(MINIMAL + "label.Ort = LOCATION | before\n", "Missing argument of transformation BEFORE");
+		assertInvalid(MINIMAL + "field.ID = a ::href\n", "Unsupported output: ::href");
+		assertInvalid(MINIMAL + "generatedId = TITLE\n", "Unknown property: TITLE");
+		assertInvalid(MINIMAL + "pair = tr\npair.label = td | trim\npair.value = td\n",
+				"Transformations are not supported here: td | trim");
+	}
+
+	@Test
+	public void testLoadNamesProvider() throws IOException {
+		File rules = new File(folder.getRoot(), "broken.properties");
+		Files.write(rules.toPath(), (MINIMAL + "field.PRIZE = td\n").getBytes(StandardCharsets.UTF_8));
+		
+		try {
+			ExtractionRules.load("broken", folder.getRoot());
+			Assert.fail("accepted broken rules");
+		} catch (IllegalArgumentException e) {
+			Assert.assertEquals("Invalid extraction rules of provider broken: Unknown property: PRIZE", e.getMessage());
+		}
+		
+		try {
+			ExtractionRules.load("missing", folder.getRoot());
+			Assert.fail("found missing rules");
+		} catch (IOException e) {
+			Assert.assertEquals("No extraction rules found for provider missing", e.getMessage());
+		}
+	}
+
+	@Test
+	public void testDirectoryTakesPrecedence() throws IOException {
+		File rules = new File(folder.getRoot(), "wn-immo.properties");
+		Files.write(rules.toPath(), MINIMAL.getBytes(StandardCharsets.UTF_8));
+		
+		Assert.assertEquals("test", ExtractionRules.load("wn-immo", folder.getRoot()).getProvider());
+	}
+
+}
@@ -0,0 +1,174 @@
+/**
+ * Copyright (C) 2015 Matthes Rieke
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.matthesrieke.realty.rules;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.github.matthesrieke.realty.Ad;
+import com.github.matthesrieke.realty.Ad.PropertyKeys;
+import com.github.matthesrieke.realty.html.HtmlTokenizer;
+
+public class RuleMatcherTest {
+
+	private static final String PAGE = "<html><body><div class=\"list\">"
+			+ "<article class=\"ad\" data-id=\"1\">"
+			+ "<h3><a href=\"/expose/1?ref=list\">Wohnung <b>mit</b> Balkon</a></h3>"
+			+ "<p class=\"address\">Hafenweg 1, 48155 Münster, Hafen</p>"
+			+ "<p class=\"size\">3 Zimmer 75 m²</p>"
+			+ "<ul><li>Balkon</li><li>Keller, Aufzug</li></ul>"
+			+ "<table><tr><td>Kaltmiete</td><td class=\"v\"> 650 € </td></tr>"
+			+ "<tr><td>Verfügbar ab</td><td class=\"v\">sofort</td></tr></table>"
+			+ "<div class=\"nested\"><article class=\"ad\" data-id=\"ignored\"></article></div>"
+			+ "</article>"
+			+ "<article class=\"ad\" data-id=\"2\"><h3><a href=\"/expose/2\">Haus</a></h3></article>"
+			+ "<article class=\"ad\"><h3>without link</h3></article>"
+			+ "</div></body></html>";
+
+	private static List<Ad> match(String... rules) throws IOException {
+		StringBuilder properties = new StringBuilder("provider = test\nhost = example.org\n");
+		for (String rule : rules) {
+			properties.append(rule).append('\n');
+		}
+		ExtractionRules parsed = ExtractionRules.parse(new StringReader(properties.toString()));
+		RuleMatcher matcher = new RuleMatcher(parsed);
+		new HtmlTokenizer(new StringReader(PAGE), matcher).parse();
+		return matcher.getAds();
+	}
+
+	@Test
+	public void testRecordsAndAttribute() throws IOException {
+		List<Ad> ads = match("record = div.list > article.ad",
+				"field.ID = h3 > a ::attr(href)");
+		
+		/*
+		 * the nested article is not a child of the list, the last
+		 * record has no ID
+		 */
+		Assert.assertEquals(2, ads.size());
+		Assert.assertEquals("/expose/1?ref=list", ads.get(0).getId());
+		Assert.assertEquals("/expose/2", ads.get(1).getId());
+	}
+
+	@Test
+	public void testNestedRecordsMatchDescendants() throws IOException {
+		List<Ad> ads = match("record = article.ad", "field.ID = > h3 > a ::attr(href)",
+				"field.DESCRIPTION = article ::attr(data-id)");
+		
+		/*
+		 * the outer record ends after the nested one
+		 */
+		Assert.assertEquals(2, ads.size());
+		Assert.assertEquals("/expose/1?ref=list", ads.get(0).getId());
+		Assert.assertEquals("ignored", ads.get(0).getProperty(PropertyKeys.DESCRIPTION));
+	}
+
+	@Test
+	public void testOwnText() throws IOException {
+		Ad ad = match("record = article.ad[data-id=1]", "field.ID = a ::attr(href)",
+				"field.DESCRIPTION = h3 a").get(0);
+		
+		Assert.assertEquals("Wohnung ", ad.getProperty(PropertyKeys.DESCRIPTION));
+	}
+
+	@Test
+	public void testText() throws IOException {
+		Ad ad = match("record = article.ad[data-id=1]", "field.ID = a ::attr(href)",
+				"field.DESCRIPTION = h3 a ::text | normalize").get(0);
+		
+		Assert.assertEquals("Wohnung mit Balkon", ad.getProperty(PropertyKeys.DESCRIPTION));
+	}
+
+	@Test
+	public void testTransformations() throws IOException {
+		Ad ad = match("record = article.ad[data-id=1]",
+				"field.ID = a ::attr(href) | before ? | prefix http://example.org",
+				"field.LOCATION = p.address | part 1",
+				"field.ROOMS = p.size | word 0",
+				"field.SPACE = p.size | word 2").get(0);
+		
+		Assert.assertEquals("http://example.org/expose/1", ad.getId());
+		Assert.assertEquals("48155 Münster", ad.getProperty(PropertyKeys.LOCATION));
+		Assert.assertEquals("3", ad.getProperty(PropertyKeys.ROOMS));
+		Assert.assertEquals("75", ad.getProperty(PropertyKeys.SPACE));
+	}
+
+	@Test
+	public void testPartOutOfRange() throws IOException {
+		Ad ad = match("record = article.ad[data-id=1]", "field.ID = a ::attr(href)",
+				"field.LOCATION = p.address | part 5").get(0);
+		
+		Assert.assertNull(ad.getProperty(PropertyKeys.LOCATION));
+	}
+
+	@Test
+	public void testFeatures() throws IOException {
+		Ad ad = match("record = article.ad[data-id=1]", "field.ID = a ::attr(href)",
+				"field.FEATURES = li").get(0);
+		
+		Assert.assertEquals(Arrays.asList("Balkon", "Keller", "Aufzug"), ad.getFeatureList());
+	}
+
+	@Test
+	public void testFirstMatchOfField() throws IOException {
+		Ad ad = match("record = article.ad[data-id=1]", "field.ID = a ::attr(href)",
+				"field.DESCRIPTION = p").get(0);
+		
+		Assert.assertEquals("Hafenweg 1, 48155 Münster, Hafen", ad.getProperty(PropertyKeys.DESCRIPTION));
+	}
+
+	@Test
+	public void testPairs() throws IOException {
+		Ad ad = match("record = article.ad[data-id=1]", "field.ID = a ::attr(href)",
+				"pair = tr", "pair.label = td:not(.v)", "pair.value = td.v",
+				"label.miete = PRICE", "label.Kaltmiete = PRICE | trim",
+				"label.Verfügbar = AVAILABLE_FROM; DESCRIPTION").get(0);
+		
+		/*
+		 * the first label rule contained in the label is applied
+		 */
+		Assert.assertEquals(" 650 € ", ad.getProperty(PropertyKeys.PRICE));
+		Assert.assertEquals("sofort", ad.getProperty(PropertyKeys.AVAILABLE_FROM));
+		Assert.assertEquals("sofort", ad.getProperty(PropertyKeys.DESCRIPTION));
+	}
+
+	@Test
+	public void testAppend() throws IOException {
+		Ad ad = match("record = article.ad[data-id=1]", "field.ID = a ::attr(href)",
+				"pair = tr", "pair.label = td:not(.v)", "pair.value = td.v",
+				"label.Kaltmiete = DESCRIPTION | normalize",
+				"label.Verfügbar = DESCRIPTION | prefix , | append").get(0);
+		
+		Assert.assertEquals("650 €,sofort", ad.getProperty(PropertyKeys.DESCRIPTION));
+	}
+
+	@Test
+	public void testGeneratedIdAndRequired() throws IOException {
+		List<Ad> generated = match("record = article.ad", "field.DESCRIPTION = h3 ::text",
+				"generatedId = DESCRIPTION");
+		List<Ad> required = match("record = article.ad", "field.ID = a ::attr(href)",
+				"field.LOCATION = p.address", "required = LOCATION");
+		
+		Assert.assertEquals(3, generated.size());
+		Assert.assertEquals(1, required.size());
+	}
+
+}
@@ -0,0 +1,231 @@
+/**
+ * Copyright (C) 2015 Matthes Rieke
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.matthesrieke.realty.storage;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.joda.time.DateTime;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.github.matthesrieke.realty.Ad;
+import com.github.matthesrieke.realty.Ad.PropertyKeys;
+import com.github.matthesrieke.realty.SourceFragment;
+import com.github.matthesrieke.realty.Util;
+
+public class AdCodecTest {
+
+	private static Ad createAd() {
+		Ad ad = Ad.forId("immomia-4711");
+		ad.setDateTime(new DateTime(1420070400000L));
+		ad.putProperty(PropertyKeys.LOCATION, "48149 Münster – Kreuzviertel 日本");
+		ad.putProperty(PropertyKeys.SPACE, "75,5 m²");
+		ad.putProperty(PropertyKeys.ROOMS, "3");
+		ad.putProperty(PropertyKeys.PRICE, "1.234,56 €");
+		ad.putProperty(PropertyKeys.SELLER_TYPE, "Privat");
+		ad.putProperty(PropertyKeys.IMAGE, "http://localhost/a.jpg");
+		ad.putProperty(PropertyKeys.DESCRIPTION, "Altbau 🏠 mit \"Stuck\"");
+		ad.putProperty(PropertyKeys.PROVIDER, "immomia");
+		ad.setFeatureList(new ArrayList<>(Arrays.asList("Balkon", "Einbauküche")));
+		ad.setSource(SourceFragment.of("<div class=\"ad\">Münster</div>"));
+		return ad;
+	}
+
+	private static void assertAdEquals(Ad expected, Ad actual) {
+		Assert.assertEquals(expected.getId(), actual.getId());
+		Assert.assertEquals(expected.getDateTime().getMillis(), actual.getDateTime().getMillis());
+		Assert.assertEquals(expected.getProperties(), actual.getProperties());
+		Assert.assertEquals(expected.getFeatureList(), actual.getFeatureList());
+		Assert.assertEquals(String.valueOf(expected.getSource()), String.valueOf(actual.getSource()));
+		Assert.assertEquals(expected.getPriceCents(), actual.getPriceCents());
+		Assert.assertEquals(expected.getSpace(), actual.getSpace(), 0f);
+		Assert.assertEquals(expected.getRooms(), actual.getRooms(), 0f);
+	}
+
+	@Test
+	public void testRoundTrip() throws IOException {
+		Ad ad = createAd();
+		AdCodec codec = new AdCodec(new ValueDictionary(), false);
+		
+		byte[] data = codec.encode(ad);
+		Ad result = codec.decode(data);
+		
+		Assert.assertTrue(AdCodec.isEncoded(data));
+		Assert.assertEquals(AdCodec.VERSION, data[1]);
+		Assert.assertEquals(0, data[2]);
+		assertAdEquals(ad, result);
+		
+		/*
+		 * every key is set, AVAILABLE_FROM to null
+		 */
+		Assert.assertEquals(PropertyKeys.values().length - 1, result.getProperties().size());
+		Assert.assertTrue(result.getProperties().containsKey(PropertyKeys.AVAILABLE_FROM));
+		Assert.assertNull(result.getProperty(PropertyKeys.AVAILABLE_FROM));
+		Assert.assertEquals("Balkon, Einbauküche", result.getProperty(PropertyKeys.FEATURES));
+	}
+
+	@Test
+	public void testMinimalAd() throws IOException {
+		Ad ad = Ad.forId("");
+		ad.setDateTime(new DateTime(0L));
+		AdCodec codec = new AdCodec(new ValueDictionary(), true);
+		
+		Ad result = codec.decode(codec.encode(ad));
+		
+		assertAdEquals(ad, result);
+		Assert.assertTrue(result.getFeatureList().isEmpty());
+		Assert.assertNull(result.getSource());
+	}
+
+	@Test
+	public void testEmptyFeatures() throws IOException {
+		Ad ad = createAd();
+		ad.setFeatureList(Collections.<String>emptyList());
+		AdCodec codec = new AdCodec(new ValueDictionary(), false);
+		
+		Ad result = codec.decode(codec.encode(ad));
+		
+		Assert.assertTrue(result.getFeatureList().isEmpty());
+		Assert.assertNull(result.getProperty(PropertyKeys.FEATURES));
+	}
+
+	@Test
+	public void testDictionaryValues() throws IOException {
+		Ad ad = createAd();
+		ValueDictionary dictionary = new ValueDictionary();
+		dictionary.intern(ad);
+		AdCodec codec = new AdCodec(dictionary, false);
+		
+		byte[] data = codec.encode(ad);
+		Ad result = codec.decode(data);
+		
+		assertAdEquals(ad, result);
+		Assert.assertTrue(data.length < new AdCodec(new ValueDictionary(), false).encode(ad).length);
+		String text = new String(data, StandardCharsets.UTF_8);
+		Assert.assertFalse(text.contains("Einbauküche"));
+		Assert.assertFalse(text.contains("Kreuzviertel"));
+		Assert.assertTrue(text.contains("Stuck"));
+		
+		/*
+		 * the decoded values are the instances of the dictionary
+		 */
+		Assert.assertSame(dictionary.decode(dictionary.lookup("immomia")),
+				result.getProperty(PropertyKeys.PROVIDER));
+		Assert.assertSame(dictionary.decode(dictionary.lookup("Balkon")),
+				result.getFeatureList().get(0));
+		Assert.assertSame(dictionary.decode(dictionary.lookup("48149 Münster – Kreuzviertel 日本")),
+				result.getProperty(PropertyKeys.LOCATION));
+	}
+
+	@Test
+	public void testLocationRoundTrip() throws IOException {
+		ValueDictionary dictionary = new ValueDictionary();
+		AdCodec codec = new AdCodec(dictionary, false);
+		Ad first = createAd();
+		first.putProperty(PropertyKeys.LOCATION, "Gievenbeck");
+		Ad second = createAd();
+		second.putProperty(PropertyKeys.LOCATION, "Gievenbeck");
+		
+		dictionary.intern(first);
+		byte[] plain = new AdCodec(new ValueDictionary(), false).encode(second);
+		dictionary.intern(second);
+		byte[] data = codec.encode(second);
+		
+		Assert.assertEquals("Gievenbeck", codec.decode(codec.encode(first)).getProperty(PropertyKeys.LOCATION));
+		Assert.assertEquals("Gievenbeck", codec.decode(data).getProperty(PropertyKeys.LOCATION));
+		Assert.assertTrue(dictionary.lookup("Gievenbeck") >= 0);
+		Assert.assertTrue(data.length < plain.length);
+	}
+
+	@Test(expected = IOException.class)
+	public void testUnknownDictionaryCode() throws IOException {
+		Ad ad = createAd();
+		ValueDictionary dictionary = new ValueDictionary();
+		dictionary.intern(ad);
+		
+		byte[] data = new AdCodec(dictionary, false).encode(ad);
+		new AdCodec(new ValueDictionary(), false).decode(data);
+	}
+
+	@Test
+	public void testCompressed() throws IOException {
+		Ad ad = createAd();
+		char[] description = new char[1024];
+		Arrays.fill(description, 'a');
+		ad.putProperty(PropertyKeys.DESCRIPTION, new String(description));
+		AdCodec codec = new AdCodec(new ValueDictionary(), true);
+		
+		byte[] data = codec.encode(ad);
+		
+		Assert.assertEquals(1, data[2]);
+		Assert.assertTrue(data.length < 256);
+		assertAdEquals(ad, codec.decode(data));
+		
+		/*
+		 * compressed data is read by any codec, small ads are not compressed
+		 */
+		assertAdEquals(ad, new AdCodec(new ValueDictionary(), false).decode(data));
+		Assert.assertEquals(0, codec.encode(Ad.forId("1"))[2]);
+		Assert.assertEquals(0, new AdCodec(new ValueDictionary(), false).encode(ad)[2]);
+	}
+
+	@Test(expected = IOException.class)
+	public void testTruncatedCompressed() throws IOException {
+		Ad ad = createAd();
+		char[] description = new char[1024];
+		Arrays.fill(description, 'a');
+		ad.putProperty(PropertyKeys.DESCRIPTION, new String(description));
+		AdCodec codec = new AdCodec(new ValueDictionary(), true);
+		
+		byte[] data = codec.encode(ad);
+		codec.decode(Arrays.copyOf(data, data.length - 4));
+	}
+
+	@Test(expected = IOException.class)
+	public void testTruncated() throws IOException {
+		AdCodec codec = new AdCodec(new ValueDictionary(), false);
+		byte[] data = codec.encode(createAd());
+		codec.decode(Arrays.copyOf(data, data.length / 2));
+	}
+
+	@Test(expected = IOException.class)
+	public void testUnknownVersion() throws IOException {
+		AdCodec codec = new AdCodec(new ValueDictionary(), false);
+		byte[] data = codec.encode(createAd());
+		data[1] = AdCodec.VERSION + 1;
+		codec.decode(data);
+	}
+
+	@Test(expected = IOException.class)
+	public void testUnknownMagic() throws IOException {
+		AdCodec codec = new AdCodec(new ValueDictionary(), false);
+		byte[] data = codec.encode(createAd());
+		data[0] = 0x42;
+		codec.decode(data);
+	}
+
+	@Test
+	public void testSerializedNotEncoded() throws IOException {
+		Assert.assertFalse(AdCodec.isEncoded(Util.serialize(createAd())));
+		Assert.assertFalse(AdCodec.isEncoded(null));
+		Assert.assertFalse(AdCodec.isEncoded(new byte[] {(byte) 0xA5, 1}));
+	}
+
+}
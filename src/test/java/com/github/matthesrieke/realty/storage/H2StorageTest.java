@@ -0,0 +1,220 @@
+/**
+ * Copyright (C) 2015 Matthes Rieke
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.matthesrieke.realty.storage;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.joda.time.DateTime;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.github.matthesrieke.realty.Ad;
+import com.github.matthesrieke.realty.Ad.PropertyKeys;
+import com.github.matthesrieke.realty.Util;
+
+public class H2StorageTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private H2Storage storage;
+
+	@Before
+	public void setup() {
+		storage = open();
+	}
+
+	@After
+	public void shutdown() {
+		storage.shutdown();
+	}
+
+	private H2Storage open() {
+		return new H2Storage(folder.getRoot().getAbsolutePath());
+	}
+
+	private void reopen() {
+		storage.shutdown();
+		storage = open();
+	}
+
+	private static Ad createAd(String id, List<String> features) {
+		Ad ad = Ad.forId(id);
+		ad.setDateTime(new DateTime(1420070400000L));
+		ad.putProperty(PropertyKeys.PROVIDER, "immomia");
+		ad.putProperty(PropertyKeys.SELLER_TYPE, "Privat");
+		ad.putProperty(PropertyKeys.LOCATION, "48149 Münster");
+		ad.putProperty(PropertyKeys.PRICE, "650 €");
+		ad.setFeatureList(new ArrayList<>(features));
+		return ad;
+	}
+
+	private Ad load(String id) throws Exception {
+		for (Ad ad : storage.getAllItems()) {
+			if (ad.getId().equals(id)) {
+				return ad;
+			}
+		}
+		throw new AssertionError("Ad not found: " + id);
+	}
+
+	private static void assertAdEquals(Ad expected, Ad actual) {
+		Assert.assertEquals(expected.getId(), actual.getId());
+		Assert.assertEquals(expected.getDateTime().getMillis(), actual.getDateTime().getMillis());
+		Assert.assertEquals(expected.getProperties(), actual.getProperties());
+		Assert.assertEquals(expected.getFeatureList(), actual.getFeatureList());
+	}
+
+	@Test
+	public void testRoundTrip() throws Exception {
+		Ad ad = createAd("1", Arrays.asList("Balkon", "\uDFFF\u0001", "a\uDFFF", "Küche"));
+		storage.storeItemsAndProvideNew(Collections.singletonList(ad));
+		
+		reopen();
+		
+		assertAdEquals(ad, load("1"));
+	}
+
+	@Test
+	public void testRoundTripAtLimit() throws Exception {
+		List<String> features = new ArrayList<>();
+		for (int i = 0; i < ValueDictionary.MAX_VALUES_PER_KEY + 10; i++) {
+			features.add("feature " + i);
+		}
+		Ad first = createAd("1", features);
+		storage.storeItemsAndProvideNew(Collections.singletonList(first));
+		
+		reopen();
+		
+		/*
+		 * the limit holds after loading the dictionary
+		 */
+		Ad second = createAd("2", Collections.singletonList("feature " + (features.size() + 1)));
+		second.putProperty(PropertyKeys.PROVIDER, "nadann");
+		storage.storeItemsAndProvideNew(Collections.singletonList(second));
+		
+		reopen();
+		
+		assertAdEquals(first, load("1"));
+		assertAdEquals(second, load("2"));
+		
+		Assert.assertEquals(ValueDictionary.MAX_VALUES_PER_KEY,
+				countDictionaryValuesOpen(PropertyKeys.FEATURES));
+		Assert.assertEquals(2, countDictionaryValuesOpen(PropertyKeys.PROVIDER));
+	}
+
+	private Connection connect() throws SQLException {
+		File db = new File(folder.getRoot(), "realty-ads");
+		return DriverManager.getConnection("jdbc:h2:" + db.getAbsolutePath());
+	}
+
+	private int countDictionaryValues(PropertyKeys key) throws SQLException {
+		try (Connection connection = connect()) {
+			Statement stmt = connection.createStatement();
+			ResultSet rs = stmt.executeQuery("SELECT count(*) from DICTIONARY where PROPERTY = '"
+					+ key.name() + "'");
+			rs.next();
+			return rs.getInt(1);
+		}
+	}
+
+	/**
+	 * stores the ad with Java serialization as before the ad codec
+	 * 
+	 * @param migrated if the database is marked as migrated
+	 */
+	private void insertSerializedAd(Ad ad, boolean migrated) throws Exception {
+		storage.shutdown();
+		try (Connection connection = connect()) {
+			PreparedStatement prep = connection.prepareStatement("insert into ADS (ID, TIME, DATA) values (?,?,?)");
+			prep.setString(1, ad.getId());
+			prep.setTimestamp(2, new Timestamp(ad.getDateTime().getMillis()));
+			prep.setBytes(3, Util.serialize(ad));
+			prep.execute();
+			if (!migrated) {
+				connection.createStatement().execute("DELETE FROM SCHEMA_VERSIONS");
+			}
+		}
+		storage = open();
+	}
+
+	private byte[] loadData(String id) throws SQLException {
+		storage.shutdown();
+		try (Connection connection = connect()) {
+			PreparedStatement prep = connection.prepareStatement("SELECT DATA from ADS where ID = ?");
+			prep.setString(1, id);
+			ResultSet rs = prep.executeQuery();
+			rs.next();
+			return rs.getBytes(1);
+		} finally {
+			storage = open();
+		}
+	}
+
+	@Test
+	public void testSerializedAdMigrated() throws Exception {
+		Ad ad = createAd("legacy", Arrays.asList("Balkon", "Keller"));
+		insertSerializedAd(ad, false);
+		
+		assertAdEquals(ad, load("legacy"));
+		byte[] data = loadData("legacy");
+		Assert.assertTrue(AdCodec.isEncoded(data));
+		
+		/*
+		 * the dictionary of the migration is stored
+		 */
+		reopen();
+		assertAdEquals(ad, load("legacy"));
+		Assert.assertEquals(2, countDictionaryValuesOpen(PropertyKeys.FEATURES));
+	}
+
+	@Test
+	public void testMigrationOnce() throws Exception {
+		Ad ad = createAd("legacy", Arrays.asList("Balkon"));
+		insertSerializedAd(ad, true);
+		
+		/*
+		 * a migrated database is not scanned again, the ad is still read
+		 */
+		Assert.assertFalse(AdCodec.isEncoded(loadData("legacy")));
+		assertAdEquals(ad, load("legacy"));
+	}
+
+	private int countDictionaryValuesOpen(PropertyKeys key) throws SQLException {
+		storage.shutdown();
+		try {
+			return countDictionaryValues(key);
+		} finally {
+			storage = open();
+		}
+	}
+
+}
@@ -0,0 +1,125 @@
+/**
+ * Copyright (C) 2015 Matthes Rieke
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.matthesrieke.realty.storage;
+
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.github.matthesrieke.realty.Ad;
+import com.github.matthesrieke.realty.Ad.PropertyKeys;
+
+public class ValueDictionaryTest {
+
+	@Test
+	public void testIntern() {
+		ValueDictionary dictionary = new ValueDictionary();
+		String value = new String("Privat");
+		
+		Assert.assertSame(value, dictionary.intern(PropertyKeys.SELLER_TYPE, value));
+		Assert.assertSame(value, dictionary.intern(PropertyKeys.SELLER_TYPE, new String("Privat")));
+		Assert.assertEquals(0, dictionary.lookup("Privat"));
+		Assert.assertEquals(-1, dictionary.lookup("Makler"));
+		Assert.assertEquals("Privat", dictionary.decode(0));
+		Assert.assertEquals(PropertyKeys.SELLER_TYPE, dictionary.keyOf(0));
+		Assert.assertNull(dictionary.intern(PropertyKeys.SELLER_TYPE, null));
+		Assert.assertEquals(1, dictionary.size());
+	}
+
+	@Test
+	public void testLongValuesNotAdded() {
+		ValueDictionary dictionary = new ValueDictionary();
+		char[] text = new char[129];
+		Arrays.fill(text, 'a');
+		
+		dictionary.intern(PropertyKeys.FEATURES, new String(text));
+		
+		Assert.assertEquals(0, dictionary.size());
+		Assert.assertEquals(0, dictionary.count(PropertyKeys.FEATURES));
+	}
+
+	@Test
+	public void testLimitPerKey() {
+		ValueDictionary dictionary = new ValueDictionary(2);
+		dictionary.intern(PropertyKeys.FEATURES, "Balkon");
+		dictionary.intern(PropertyKeys.FEATURES, "Keller");
+		dictionary.intern(PropertyKeys.FEATURES, "Garten");
+		dictionary.intern(PropertyKeys.PROVIDER, "immomia");
+		
+		Assert.assertEquals(2, dictionary.count(PropertyKeys.FEATURES));
+		Assert.assertEquals(-1, dictionary.lookup("Garten"));
+		Assert.assertEquals(1, dictionary.count(PropertyKeys.PROVIDER));
+		Assert.assertEquals(2, dictionary.lookup("immomia"));
+		
+		/*
+		 * contained values are still shared
+		 */
+		Assert.assertEquals(1, dictionary.lookup(dictionary.intern(PropertyKeys.FEATURES, "Keller")));
+	}
+
+	@Test
+	public void testRestore() {
+		ValueDictionary dictionary = new ValueDictionary(1);
+		dictionary.restore(PropertyKeys.FEATURES, "Balkon");
+		dictionary.restore(PropertyKeys.FEATURES, "Keller");
+		dictionary.restore(null, "Münster");
+		
+		Assert.assertEquals(3, dictionary.size());
+		Assert.assertEquals(2, dictionary.count(PropertyKeys.FEATURES));
+		Assert.assertEquals(1, dictionary.lookup("Keller"));
+		Assert.assertNull(dictionary.keyOf(2));
+		
+		dictionary.intern(PropertyKeys.FEATURES, "Garten");
+		Assert.assertEquals(3, dictionary.size());
+	}
+
+	@Test
+	public void testInternAd() {
+		ValueDictionary dictionary = new ValueDictionary();
+		Ad ad = Ad.forId("1");
+		ad.putProperty(PropertyKeys.PROVIDER, "immomia");
+		ad.putProperty(PropertyKeys.SELLER_TYPE, "Privat");
+		ad.putProperty(PropertyKeys.LOCATION, "48149 Münster, Kreuzviertel");
+		ad.putProperty(PropertyKeys.FEATURES, "Balkon, Keller");
+		
+		ad.putProperty(PropertyKeys.DESCRIPTION, "Altbau");
+		
+		dictionary.intern(ad);
+		
+		Assert.assertEquals(5, dictionary.size());
+		Assert.assertEquals(PropertyKeys.LOCATION, dictionary.keyOf(dictionary.lookup("48149 Münster, Kreuzviertel")));
+		Assert.assertEquals(-1, dictionary.lookup("Altbau"));
+		Assert.assertEquals(2, dictionary.count(PropertyKeys.FEATURES));
+		Assert.assertEquals(1, dictionary.count(PropertyKeys.PROVIDER));
+	}
+
+	@Test
+	public void testLocationsShared() {
+		ValueDictionary dictionary = new ValueDictionary();
+		Ad first = Ad.forId("1");
+		first.putProperty(PropertyKeys.LOCATION, "Kreuzviertel");
+		Ad second = Ad.forId("2");
+		second.putProperty(PropertyKeys.LOCATION, new String("Kreuzviertel"));
+		
+		dictionary.intern(first);
+		dictionary.intern(second);
+		
+		Assert.assertSame(first.getProperty(PropertyKeys.LOCATION), second.getProperty(PropertyKeys.LOCATION));
+		Assert.assertEquals(1, dictionary.count(PropertyKeys.LOCATION));
+	}
+
+}